@@ -0,0 +1,300 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import projects.paxos.nodes.nodeImplementations.PaxosNode;
+import sinalgo.nodes.Node;
+import sinalgo.runtime.Main;
+import sinalgo.tools.Tools;
+
+/**
+ * Paxos groups, their acceptor sets and the phase 1 / phase 2 quorum sizes.
+ * <p>
+ * The PaxosNodes are split into <code>groups</code> independent groups by
+ * ID, and the keyspace is split among the groups by hash. The size of a
+ * group is <code>clusterSize</code> from the configuration, or the number of
+ * its deployed PaxosNodes if that is 0. Quorums follow Flexible Paxos: any
+ * phase 1 quorum must intersect any phase 2 quorum, i.e. q1 + q2 > N.
+ * Quorum sizes that are not configured are derived from the other one, or
+ * default to a majority.
+ */
+public class Cluster {
+	private static List<PaxosNode> members = new ArrayList<PaxosNode>();
+	private static List<List<PaxosNode>> groupMembers = new ArrayList<List<PaxosNode>>();
+	private static int[] sizes = new int[0];
+	private static int[] phase1Quorums = new int[0];
+	private static int[] phase2Quorums = new int[0];
+	private static double[] keyPopularity = null;
+	private static int[][] groupKeys = null;
+	private static double[][] groupPopularity = null;
+
+	/**
+	 * Recomputes the group sizes and the quorums. Called before every round,
+	 * as nodes may be added or removed at any time.
+	 */
+	public static void refresh() {
+		int groups = groups();
+		if (sizes.length != groups) {
+			groupMembers.clear();
+			for (int g = 0; g < groups; g++) {
+				groupMembers.add(new ArrayList<PaxosNode>());
+			}
+			sizes = new int[groups];
+			phase1Quorums = new int[groups];
+			phase2Quorums = new int[groups];
+		}
+		members.clear();
+		for (List<PaxosNode> m : groupMembers) {
+			m.clear();
+		}
+		for (Node node : Tools.getNodeList()) {
+			if (node instanceof PaxosNode) {
+				members.add((PaxosNode) node);
+				groupMembers.get(groupOf(node)).add((PaxosNode) node);
+			}
+		}
+		for (int g = 0; g < groups; g++) {
+			int n = PaxosConfig.clusterSize > 0 ? PaxosConfig.clusterSize : groupMembers.get(g).size();
+			if (n != sizes[g]) {
+				sizes[g] = n;
+				quorums(g, n);
+			}
+		}
+	}
+
+	private static void quorums(int group, int n) {
+		int majority = n / 2 + 1;
+		int q1 = PaxosConfig.phase1Quorum;
+		int q2 = PaxosConfig.phase2Quorum;
+		if (q1 <= 0 && q2 <= 0) {
+			q1 = majority;
+			q2 = majority;
+		} else if (q1 <= 0) {
+			q1 = n - q2 + 1;
+		} else if (q2 <= 0) {
+			q2 = n - q1 + 1;
+		}
+		if (q1 + q2 <= n) {
+			Main.warning("Phase 1 quorum (" + q1 + ") and phase 2 quorum (" + q2 + ") do not intersect for " 
+					+ n + " nodes; using majorities.");
+			q1 = majority;
+			q2 = majority;
+		}
+		phase1Quorums[group] = Math.max(1, Math.min(q1, n));
+		phase2Quorums[group] = Math.max(1, Math.min(q2, n));
+	}
+
+	public static int groups() {
+		return PaxosConfig.groups;
+	}
+
+	/**
+	 * @return The group of a PaxosNode.
+	 */
+	public static int groupOf(Node n) {
+		return n.ID % groups();
+	}
+
+	/**
+	 * @return The group that owns <code>key</code>.
+	 */
+	public static int groupOf(String key) {
+		return Math.abs(key.hashCode() % groups());
+	}
+
+	public static int size(int group) {
+		if (sizes.length == 0) {
+			refresh();
+		}
+		return sizes[group];
+	}
+
+	/**
+	 * @return All deployed PaxosNodes, as of the last refresh.
+	 */
+	public static List<PaxosNode> members() {
+		size(0);
+		return members;
+	}
+
+	/**
+	 * @return The deployed PaxosNodes of <code>group</code>, as of the last
+	 * refresh.
+	 */
+	public static List<PaxosNode> members(int group) {
+		size(0);
+		return groupMembers.get(group);
+	}
+
+	public static int phase1Quorum(int group) {
+		size(0);
+		return phase1Quorums[group];
+	}
+
+	public static int phase2Quorum(int group) {
+		size(0);
+		return phase2Quorums[group];
+	}
+
+	/**
+	 * @return The size of the fast path quorum of the leaderless mode,
+	 * including the command leader: F + floor((F + 1) / 2) for N = 2F + 1.
+	 */
+	public static int fastQuorum(int group) {
+		int f = (size(group) - 1) / 2;
+		return Math.max(1, f + (f + 1) / 2);
+	}
+
+	/**
+	 * @return The size of the slow path quorum of the leaderless mode,
+	 * including the command leader: a majority.
+	 */
+	public static int slowQuorum(int group) {
+		return size(group) / 2 + 1;
+	}
+
+	/**
+	 * @return A random key out of <code>keys</code>, uniformly or Zipf
+	 * distributed with exponent <code>keySkew</code>.
+	 */
+	public static String randomKey() {
+		Random random = Tools.getRandomNumberGenerator();
+		if (PaxosConfig.keySkew <= 0) {
+			return "k" + random.nextInt(PaxosConfig.keys);
+		}
+		if (keyPopularity == null) {
+			keyPopularity = new double[PaxosConfig.keys];
+			double sum = 0;
+			for (int i = 0; i < keyPopularity.length; i++) {
+				sum += 1 / Math.pow(i + 1, PaxosConfig.keySkew);
+				keyPopularity[i] = sum;
+			}
+			for (int i = 0; i < keyPopularity.length; i++) {
+				keyPopularity[i] /= sum;
+			}
+		}
+		int i = Arrays.binarySearch(keyPopularity, random.nextDouble());
+		return "k" + Math.min(i < 0 ? -i - 1 : i, keyPopularity.length - 1);
+	}
+
+	/**
+	 * @return A random key owned by <code>group</code>; the keys of the
+	 * group keep the relative popularity they have in {@link #randomKey()}.
+	 */
+	public static String randomKey(int group) {
+		if (groupKeys == null) {
+			splitKeys();
+		}
+		int[] keys = groupKeys[group];
+		Random random = Tools.getRandomNumberGenerator();
+		if (PaxosConfig.keySkew <= 0) {
+			return "k" + keys[random.nextInt(keys.length)];
+		}
+		int i = Arrays.binarySearch(groupPopularity[group], random.nextDouble());
+		return "k" + keys[Math.min(i < 0 ? -i - 1 : i, keys.length - 1)];
+	}
+
+	/**
+	 * Lists the keys of every group, with their cumulative Zipf weights.
+	 */
+	private static void splitKeys() {
+		int groups = groups();
+		int[] counts = new int[groups];
+		for (int k = 0; k < PaxosConfig.keys; k++) {
+			counts[groupOf("k" + k)]++;
+		}
+		groupKeys = new int[groups][];
+		groupPopularity = new double[groups][];
+		for (int g = 0; g < groups; g++) {
+			if (counts[g] == 0) {
+				Main.fatalError("Paxos group " + g + " owns none of the " + PaxosConfig.keys + " keys; raise keys.");
+			}
+			groupKeys[g] = new int[counts[g]];
+			groupPopularity[g] = new double[counts[g]];
+			counts[g] = 0;
+		}
+		double[] sums = new double[groups];
+		for (int k = 0; k < PaxosConfig.keys; k++) {
+			int g = groupOf("k" + k);
+			sums[g] += 1 / Math.pow(k + 1, PaxosConfig.keySkew);
+			groupKeys[g][counts[g]] = k;
+			groupPopularity[g][counts[g]++] = sums[g];
+		}
+		for (int g = 0; g < groups; g++) {
+			for (int i = 0; i < groupPopularity[g].length; i++) {
+				groupPopularity[g][i] /= sums[g];
+			}
+		}
+	}
+
+	/**
+	 * @return The number of slots decided in all groups together, counting
+	 * each group by its most advanced member.
+	 */
+	public static int decidedSlots() {
+		int decided = 0;
+		for (int g = 0; g < groups(); g++) {
+			int max = 0;
+			for (PaxosNode p : members(g)) {
+				max = Math.max(max, p.getDecidedSlots());
+			}
+			decided += max;
+		}
+		return decided;
+	}
+
+	/**
+	 * @return The number of commands delivered in all groups together,
+	 * counting each group by its most advanced member.
+	 */
+	public static int deliveredCommands() {
+		int delivered = 0;
+		for (int g = 0; g < groups(); g++) {
+			int max = 0;
+			for (PaxosNode p : members(g)) {
+				max = Math.max(max, p.getDeliveredCommands());
+			}
+			delivered += max;
+		}
+		return delivered;
+	}
+}
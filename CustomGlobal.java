@@ -37,9 +37,18 @@
 package projects.paxos;
 
 
+import java.util.Random;
+
 import javax.swing.JOptionPane;
 
+import projects.paxos.nodes.nodeImplementations.BackboneNode;
+import projects.paxos.nodes.nodeImplementations.ClientNode;
+import projects.paxos.nodes.nodeImplementations.PaxosNode;
+import sinalgo.nodes.Node;
 import sinalgo.runtime.AbstractCustomGlobal;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
+import sinalgo.tools.logging.Logging;
 
 /**
  * This class holds customized global state and methods for the framework. 
@@ -63,12 +72,291 @@ import sinalgo.runtime.AbstractCustomGlobal;
  * added to the GUI. 
  */
 public class CustomGlobal extends AbstractCustomGlobal{
+	private int injectedCrashes = 0;
 	
 	/* (non-Javadoc)
 	 * @see runtime.AbstractCustomGlobal#hasTerminated()
 	 */
 	public boolean hasTerminated() {
-		return false;
+		return PaxosConfig.targetDecisions > 0 && Metrics.decidedSlots() >= PaxosConfig.targetDecisions;
+	}
+
+	/* (non-Javadoc)
+	 * @see sinalgo.runtime.AbstractCustomGlobal#preRound()
+	 */
+	public void preRound() {
+		Cluster.refresh();
+		if (PaxosConfig.crashRate > 0) {
+			injectFailures();
+		}
+	}
+
+	/**
+	 * Crashes every running PaxosNode with probability <code>crashRate</code>
+	 * and recovers every crashed one with probability <code>recoverRate</code>.
+	 */
+	private void injectFailures() {
+		Random random = Tools.getRandomNumberGenerator();
+		for (PaxosNode p : Cluster.members()) {
+			if (p.isCrashed()) {
+				if (random.nextDouble() < PaxosConfig.recoverRate) {
+					p.recover();
+				}
+			} else if (random.nextDouble() < PaxosConfig.crashRate) {
+				p.crash();
+				injectedCrashes++;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see sinalgo.runtime.AbstractCustomGlobal#postRound()
+	 */
+	public void postRound() {
+		Metrics.postRound();
+	}
+
+	/* (non-Javadoc)
+	 * @see sinalgo.runtime.AbstractCustomGlobal#onExit()
+	 */
+	public void onExit() {
+		Metrics.close();
+		Logging.getLogger().logln(throughput());
+		Logging.getLogger().logln(Metrics.summary());
+		Logging.getLogger().logln(result());
+		Logging.getLogger().logln(dedupStatistics());
+		Logging.getLogger().logln(electionStatistics());
+		Logging.getLogger().logln(catchUpStatistics());
+		Logging.getLogger().logln(readStatistics());
+		Logging.getLogger().logln(clientStatistics());
+		Logging.getLogger().logln(leaderlessStatistics());
+		Logging.getLogger().logln(loadStatistics());
+		long syncs = 0;
+		for (Node n : Tools.getNodeList()) {
+			if (n instanceof PaxosNode) {
+				syncs += ((PaxosNode) n).getStorageSyncs();
+			}
+		}
+		Logging.getLogger().logln("Acceptors synced their stable storage " + syncs + " times (acceptorStorage=" 
+			+ PaxosConfig.acceptorStorage + ", walGroupCommit=" + PaxosConfig.walGroupCommit + ")");
+	}
+
+	/**
+	 * Shows how many slots and commands were decided per round so far.
+	 */
+	@AbstractCustomGlobal.GlobalMethod(menuText="Decisions per round")
+	public void decisionsPerRound() {
+		JOptionPane.showMessageDialog(null, throughput(), "Throughput", JOptionPane.INFORMATION_MESSAGE);
+	}
+
+	/**
+	 * @return The outcome of the run on a single line of tab separated
+	 * <code>key=value</code> pairs, for the benchmark drivers.
+	 */
+	private String result() {
+		int decided = Cluster.decidedSlots();
+		int commands = Cluster.deliveredCommands();
+		long reads = 0;
+		for (PaxosNode p : Cluster.members()) {
+			reads += p.getLocalReads() + p.getLoggedReads();
+		}
+		return "Result\trounds=" + (int) Global.currentTime + "\tdecided=" + decided + "\tcommands=" + commands 
+			+ "\tmessages=" + Global.numberOfMessagesOverAll + "\tbytes=" + Metrics.totalBytes(Metrics.SENT) 
+			+ "\tcommitMean=" + Metrics.phase2.mean() 
+			+ "\tcommitP50=" + Metrics.phase2.percentile(0.5) + "\tcommitP99=" + Metrics.phase2.percentile(0.99) 
+			+ "\tcrashes=" + injectedCrashes + "\treads=" + reads 
+			+ "\tclientOps=" + Metrics.clientLatency.count() + "\tclientP50=" + Metrics.clientLatency.percentile(0.5) 
+			+ "\tclientP99=" + Metrics.clientLatency.percentile(0.99) 
+			+ "\tfastPath=" + fastPathShare() + "\tpaxosLoadMax=" + loadImbalance(PaxosNode.class) 
+			+ "\tbackboneLoadMax=" + loadImbalance(BackboneNode.class);
+	}
+
+	/**
+	 * @return The share of the instances committed on the fast path in
+	 * leaderless mode, or 0 if none were committed.
+	 */
+	private double fastPathShare() {
+		long fast = 0;
+		long slow = 0;
+		for (PaxosNode p : Cluster.members()) {
+			fast += p.getFastCommits();
+			slow += p.getSlowCommits();
+		}
+		return fast + slow == 0 ? 0 : (double) fast / (fast + slow);
+	}
+
+	/**
+	 * @return The number of messages received by the busiest node of the
+	 * given type, relative to the mean over all nodes of that type.
+	 */
+	private double loadImbalance(Class<? extends Node> type) {
+		long max = 0;
+		long total = 0;
+		int nodes = 0;
+		for (Node n : Tools.getNodeList()) {
+			if (type.isInstance(n)) {
+				max = Math.max(max, Metrics.receivedBy(n.ID));
+				total += Metrics.receivedBy(n.ID);
+				nodes++;
+			}
+		}
+		return total == 0 ? 0 : (double) max * nodes / total;
+	}
+
+	private String leaderlessStatistics() {
+		if (!PaxosConfig.leaderless) {
+			return "Leaderless mode disabled";
+		}
+		long fast = 0;
+		long slow = 0;
+		for (PaxosNode p : Cluster.members()) {
+			fast += p.getFastCommits();
+			slow += p.getSlowCommits();
+		}
+		return "Committed " + fast + " instances on the fast path and " + slow + " on the slow path (fastPath=" 
+			+ fastPathShare() + ", keys=" + PaxosConfig.keys + ", keySkew=" + PaxosConfig.keySkew + ")";
+	}
+
+	private String loadStatistics() {
+		StringBuilder s = new StringBuilder("Load per PaxosNode:");
+		long sentMax = 0;
+		long sentTotal = 0;
+		long receivedTotal = 0;
+		int nodes = 0;
+		for (PaxosNode p : Cluster.members()) {
+			s.append(' ').append(p.ID).append('=').append(Metrics.sentBy(p.ID)).append('/').append(Metrics.receivedBy(p.ID));
+			sentMax = Math.max(sentMax, Metrics.sentBy(p.ID));
+			sentTotal += Metrics.sentBy(p.ID);
+			receivedTotal += Metrics.receivedBy(p.ID);
+			nodes++;
+		}
+		s.append(" (sent/received); sent mean ").append(nodes == 0 ? 0 : (double) sentTotal / nodes)
+			.append(" max ").append(sentMax).append(", received mean ").append(nodes == 0 ? 0 : (double) receivedTotal / nodes)
+			.append(" max/mean ").append(loadImbalance(PaxosNode.class));
+		Node hottest = null;
+		for (Node n : Tools.getNodeList()) {
+			if (n instanceof BackboneNode && (hottest == null || Metrics.receivedBy(n.ID) > Metrics.receivedBy(hottest.ID))) {
+				hottest = n;
+			}
+		}
+		if (hottest != null) {
+			s.append("; busiest BackboneNode ").append(hottest.ID).append(" received ").append(Metrics.receivedBy(hottest.ID))
+				.append(", max/mean ").append(loadImbalance(BackboneNode.class));
+		}
+		return s.toString();
+	}
+
+	private String clientStatistics() {
+		int clients = 0;
+		int issued = 0;
+		int retries = 0;
+		for (Node n : Tools.getNodeList()) {
+			if (n instanceof ClientNode) {
+				clients++;
+				issued += ((ClientNode) n).getIssued();
+				retries += ((ClientNode) n).getRetries();
+			}
+		}
+		if (clients == 0) {
+			return "No ClientNodes deployed";
+		}
+		double rounds = Math.max(1, Global.currentTime);
+		return clients + " clients issued " + issued + " commands and completed " + Metrics.clientLatency.count() 
+			+ ": " + (Metrics.clientLatency.count() / rounds) + " commands/round, " + retries + " retries, latency " 
+			+ Metrics.clientLatency + " (clientLoad=" + PaxosConfig.clientLoad + ", clientOutstanding=" 
+			+ PaxosConfig.clientOutstanding + ", clientRate=" + PaxosConfig.clientRate + ")";
+	}
+
+	private String readStatistics() {
+		long local = 0;
+		long logged = 0;
+		for (Node n : Tools.getNodeList()) {
+			if (n instanceof PaxosNode) {
+				local += ((PaxosNode) n).getLocalReads();
+				logged += ((PaxosNode) n).getLoggedReads();
+			}
+		}
+		double rounds = Math.max(1, Global.currentTime);
+		return "Served " + local + " reads locally under a lease and " + logged + " through the log: " 
+			+ ((local + logged) / rounds) + " reads/round (leaseDuration=" + PaxosConfig.leaseDuration 
+			+ ", clockDrift=" + PaxosConfig.clockDrift + ", readsPerRound=" + PaxosConfig.readsPerRound + ")";
+	}
+
+	private String catchUpStatistics() {
+		int catchUps = 0;
+		double rounds = 0;
+		long slots = 0;
+		for (Node n : Tools.getNodeList()) {
+			if (n instanceof PaxosNode) {
+				PaxosNode p = (PaxosNode) n;
+				catchUps += p.getCatchUps();
+				rounds += p.getCatchUpRoundsSum();
+				slots += p.getCatchUpSlotsSum();
+			}
+		}
+		if (catchUps == 0) {
+			return "No learner had to catch up";
+		}
+		return catchUps + " learner catch-ups over " + (slots / catchUps) + " slots on average took "
+			+ (rounds / catchUps) + " rounds on average (snapshotInterval=" + PaxosConfig.snapshotInterval 
+			+ ", catchUpBatch=" + PaxosConfig.catchUpBatch + ")";
+	}
+
+	private String electionStatistics() {
+		int recoveries = 0;
+		double recoveryRounds = 0;
+		int conflicts = 0;
+		double wasted = 0;
+		for (Node n : Tools.getNodeList()) {
+			if (n instanceof PaxosNode) {
+				PaxosNode p = (PaxosNode) n;
+				recoveries += p.getLeadershipRecoveries();
+				recoveryRounds += p.getRecoveryRoundsSum();
+				conflicts += p.getBallotConflicts();
+				wasted += p.getWastedRounds();
+			}
+		}
+		return "Leadership recovered " + recoveries + " times, " 
+			+ (recoveries == 0 ? 0 : recoveryRounds / recoveries) + " rounds on average; "
+			+ conflicts + " proposal number conflicts wasted " + wasted + " rounds";
+	}
+
+	private String dedupStatistics() {
+		int duplicates = 0;
+		int tooOld = 0;
+		for (Node n : Tools.getNodeList()) {
+			if (n instanceof BackboneNode) {
+				duplicates += ((BackboneNode) n).getDroppedDuplicates();
+				tooOld += ((BackboneNode) n).getDroppedTooOld();
+			}
+		}
+		long sent = Metrics.total(Metrics.SENT);
+		return "Backbone dropped " + duplicates + " duplicates and " + tooOld 
+			+ " messages older than the window (dedupWindow=" + PaxosConfig.dedupWindow + "); " 
+			+ (sent == 0 ? 0 : (double) Global.numberOfMessagesOverAll / sent) + " transmissions per message sent"
+			+ " (dissemination=" + PaxosConfig.dissemination + ")";
+	}
+
+	private String throughput() {
+		int decided = Cluster.decidedSlots();
+		int commands = Cluster.deliveredCommands();
+		double latency = 0;
+		int leaders = 0;
+		for (PaxosNode p : Cluster.members()) {
+			if (p.isDistinguished() || (PaxosConfig.leaderless && p.getAverageCommitLatency() > 0)) {
+				latency += p.getAverageCommitLatency();
+				leaders++;
+			}
+		}
+		latency = leaders == 0 ? 0 : latency / leaders;
+		double rounds = Math.max(1, Global.currentTime);
+		return "Decided " + decided + " slots (" + commands + " commands) in " + (int) rounds + " rounds: " 
+			+ (decided / rounds) + " decisions/round, " + (commands / rounds) + " commands/round"
+			+ ", " + Global.numberOfMessagesOverAll + " messages sent"
+			+ ", commit latency " + latency + " rounds"
+			+ " (groups=" + Cluster.groups() + ", clusterSize=" + Cluster.size(0) 
+			+ ", q1=" + Cluster.phase1Quorum(0) + ", q2=" + Cluster.phase2Quorum(0)
+			+ ", pipelineWindow=" + PaxosConfig.pipelineWindow + ", batchSize=" + PaxosConfig.batchSize + ")";
 	}
 
 	/**
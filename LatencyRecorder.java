@@ -0,0 +1,150 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos;
+
+import java.util.Arrays;
+
+/**
+ * Latency histogram in the style of HdrHistogram. Values are counted in
+ * thousandths of a round in log-linear buckets: every power of two is split
+ * into enough linear sub-buckets to keep <code>significantDigits</code>
+ * decimal digits, so percentiles have a bounded relative error over any
+ * range of values. Recording is O(1); the bucket array grows on demand.
+ */
+public class LatencyRecorder {
+	/** Recorded values are counted in thousandths of a round. */
+	static final double UNITS = 1000;
+
+	private final int subBucketBits;
+	private final int subBucketHalf;
+	private long[] counts;
+	private long count = 0;
+	private double sum = 0;
+	private double max = 0;
+
+	public LatencyRecorder(int significantDigits) {
+		long largest = 2 * (long) Math.pow(10, significantDigits);
+		subBucketBits = 64 - Long.numberOfLeadingZeros(largest - 1);
+		subBucketHalf = 1 << (subBucketBits - 1);
+		counts = new long[1 << subBucketBits];
+	}
+
+	public void record(double rounds) {
+		long value = Math.round(Math.max(0, rounds) * UNITS);
+		int index = index(value);
+		if (index >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(2 * counts.length, index + 1));
+		}
+		counts[index]++;
+		count++;
+		sum += rounds;
+		max = Math.max(max, rounds);
+	}
+
+	/**
+	 * Adds all values recorded by <code>other</code>, which must have the
+	 * same precision.
+	 */
+	public void add(LatencyRecorder other) {
+		if (other.subBucketBits != subBucketBits) {
+			throw new IllegalArgumentException("Recorders differ in precision");
+		}
+		if (other.counts.length > counts.length) {
+			counts = Arrays.copyOf(counts, other.counts.length);
+		}
+		for (int i = 0; i < other.counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public double mean() {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	public double max() {
+		return max;
+	}
+
+	/**
+	 * @return The smallest latency that at least the fraction <code>p</code>
+	 * of all recorded latencies do not exceed, up to the precision of the
+	 * recorder.
+	 */
+	public double percentile(double p) {
+		long rank = Math.max(1, (long) Math.ceil(p * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(max, highestEquivalent(i) / UNITS);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Bucket 0 holds the values below <code>2 * subBucketHalf</code> one by
+	 * one; bucket <code>b</code> halves the resolution of bucket
+	 * <code>b - 1</code> and only uses its upper half of sub-buckets.
+	 */
+	private int index(long value) {
+		int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - subBucketBits);
+		int sub = (int) (value >>> bucket);
+		return bucket * subBucketHalf + sub;
+	}
+
+	private long highestEquivalent(int index) {
+		if (index < 2 * subBucketHalf) {
+			return index;
+		}
+		int bucket = index / subBucketHalf - 1;
+		long sub = index - bucket * subBucketHalf;
+		return ((sub + 1) << bucket) - 1;
+	}
+
+	public String toString() {
+		return "n=" + count + " mean=" + mean() + " p50=" + percentile(0.5) + " p99=" + percentile(0.99) 
+			+ " p99.9=" + percentile(0.999) + " max=" + max;
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import projects.paxos.nodes.messages.TimestampedMessage;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+import sinalgo.runtime.Main;
+
+/**
+ * Protocol instrumentation: messages and bytes sent, forwarded and dropped
+ * per message type, phase 1 and phase 2 latencies, decided slots and the inbox size of
+ * every node.
+ * <p>
+ * Every <code>metricsInterval</code> rounds, <code>postRound</code> appends
+ * one row to <code>metricsFile</code>, either as CSV with the totals over all
+ * message types or as one JSON object per line with the full breakdown. At
+ * most <code>metricsBuffer</code> rows are held in memory before they are
+ * written out.
+ */
+public class Metrics {
+	public static final int SENT = 0;
+	public static final int FORWARDED = 1;
+	public static final int DROPPED = 2;
+
+	/** Rounds from the start of a ballot until a phase 1 quorum promised. */
+	public static final RoundHistogram phase1 = new RoundHistogram(1024);
+	/** Rounds from proposing a value until a phase 2 quorum accepted it. */
+	public static final RoundHistogram phase2 = new RoundHistogram(1024);
+	/** Rounds a transmission waited for the link of its sender, with BandwidthTime. */
+	public static final RoundHistogram queueing = new RoundHistogram(1024);
+	/** Rounds from issuing a command at a ClientNode until it got the reply. */
+	public static final LatencyRecorder clientLatency = new LatencyRecorder(3);
+
+	// per message type: counts of the three kinds, then their bytes
+	private static final Map<Class<?>, long[]> messages = new LinkedHashMap<Class<?>, long[]>();
+	private static final long[] totals = new long[6];
+	private static int[] inboxSizes = new int[16];
+	// per node since the start of the run: messages originated and received
+	private static long[] sent = new long[16];
+	private static long[] received = new long[16];
+	private static int maxNodeId = 0;
+	private static int decidedSlots = 0;
+	private static int deliveredCommands = 0;
+
+	private static Writer out = null;
+	private static final StringBuilder buffer = new StringBuilder();
+	private static int bufferedRows = 0;
+
+	/**
+	 * Counts a message of the given kind: <code>SENT</code>,
+	 * <code>FORWARDED</code> or <code>DROPPED</code>, and its encoded size.
+	 */
+	public static void count(int kind, Message msg) {
+		long[] counters = messages.get(msg.getClass());
+		if (counters == null) {
+			counters = new long[6];
+			messages.put(msg.getClass(), counters);
+		}
+		int bytes = msg instanceof TimestampedMessage ? ((TimestampedMessage) msg).byteSize() : 0;
+		counters[kind]++;
+		counters[3 + kind] += bytes;
+		totals[kind]++;
+		totals[3 + kind] += bytes;
+		if (kind == SENT && msg instanceof TimestampedMessage && ((TimestampedMessage) msg).originalSender != null) {
+			int id = ((TimestampedMessage) msg).originalSender.ID;
+			if (id >= sent.length) {
+				sent = Arrays.copyOf(sent, Math.max(id + 1, 2 * sent.length));
+			}
+			sent[id]++;
+		}
+	}
+
+	/**
+	 * Records the number of messages a node found in its inbox this round.
+	 */
+	public static void inbox(int id, int size) {
+		if (id >= inboxSizes.length) {
+			inboxSizes = Arrays.copyOf(inboxSizes, Math.max(id + 1, 2 * inboxSizes.length));
+		}
+		inboxSizes[id] = size;
+		if (id >= received.length) {
+			received = Arrays.copyOf(received, Math.max(id + 1, 2 * received.length));
+		}
+		received[id] += size;
+		maxNodeId = Math.max(maxNodeId, id);
+	}
+
+	/**
+	 * @return The number of messages node <code>id</code> originated so far.
+	 */
+	public static long sentBy(int id) {
+		return id < sent.length ? sent[id] : 0;
+	}
+
+	/**
+	 * @return The number of messages node <code>id</code> received so far.
+	 */
+	public static long receivedBy(int id) {
+		return id < received.length ? received[id] : 0;
+	}
+
+	/**
+	 * @return The number of slots the most advanced learner has decided, as
+	 * of the end of the last round.
+	 */
+	public static int decidedSlots() {
+		return decidedSlots;
+	}
+
+	public static long total(int kind) {
+		return totals[kind];
+	}
+
+	/**
+	 * @return The number of bytes of all messages of the given kind.
+	 */
+	public static long totalBytes(int kind) {
+		return totals[3 + kind];
+	}
+
+	/**
+	 * Called at the end of every round.
+	 */
+	public static void postRound() {
+		decidedSlots = Math.max(decidedSlots, Cluster.decidedSlots());
+		deliveredCommands = Math.max(deliveredCommands, Cluster.deliveredCommands());
+		if (PaxosConfig.metricsFile.length() > 0 && (int) Global.currentTime % PaxosConfig.metricsInterval == 0) {
+			if (PaxosConfig.metricsFormat.equals("json")) {
+				appendJson();
+			} else {
+				appendCsv();
+			}
+			if (++bufferedRows >= PaxosConfig.metricsBuffer) {
+				flush();
+			}
+		}
+		Arrays.fill(inboxSizes, 0);
+	}
+
+	/**
+	 * Writes out the buffered rows and closes the metrics file.
+	 */
+	public static void close() {
+		if (out == null && bufferedRows == 0) {
+			return;
+		}
+		flush();
+		try {
+			out.close();
+		} catch (IOException e) {
+			Main.warning("Cannot close the metrics file: " + e.getMessage());
+		}
+		out = null;
+	}
+
+	/**
+	 * @return One line per message type with its counters, and the latency
+	 * histograms.
+	 */
+	public static String summary() {
+		StringBuilder s = new StringBuilder("Messages (sent/forwarded/dropped, bytes sent/forwarded/dropped):");
+		for (Map.Entry<Class<?>, long[]> e : messages.entrySet()) {
+			long[] c = e.getValue();
+			s.append("\n\t").append(e.getKey().getSimpleName()).append(' ')
+				.append(c[SENT]).append('/').append(c[FORWARDED]).append('/').append(c[DROPPED]).append(", ")
+				.append(c[3 + SENT]).append('/').append(c[3 + FORWARDED]).append('/').append(c[3 + DROPPED]);
+		}
+		s.append("\nPhase 1 latency: ").append(phase1);
+		s.append("\nPhase 2 latency: ").append(phase2);
+		if (queueing.count() > 0) {
+			s.append("\nLink queueing delay: ").append(queueing);
+		}
+		if (clientLatency.count() > 0) {
+			s.append("\nClient latency: ").append(clientLatency);
+		}
+		return s.toString();
+	}
+
+	private static void appendCsv() {
+		if (out == null && bufferedRows == 0) {
+			buffer.append("round,decidedSlots,deliveredCommands,sent,forwarded,dropped,bytesSent,bytesForwarded,")
+				.append("phase1Count,phase1Mean,phase2Count,phase2Mean,phase2P99,inboxMax,inboxTotal\n");
+		}
+		int inboxMax = 0;
+		long inboxTotal = 0;
+		for (int size : inboxSizes) {
+			inboxMax = Math.max(inboxMax, size);
+			inboxTotal += size;
+		}
+		buffer.append((int) Global.currentTime).append(',')
+			.append(decidedSlots).append(',').append(deliveredCommands).append(',')
+			.append(totals[SENT]).append(',').append(totals[FORWARDED]).append(',').append(totals[DROPPED]).append(',')
+			.append(totals[3 + SENT]).append(',').append(totals[3 + FORWARDED]).append(',')
+			.append(phase1.count()).append(',').append(phase1.mean()).append(',')
+			.append(phase2.count()).append(',').append(phase2.mean()).append(',').append(phase2.percentile(0.99)).append(',')
+			.append(inboxMax).append(',').append(inboxTotal).append('\n');
+	}
+
+	private static void appendJson() {
+		buffer.append("{\"round\":").append((int) Global.currentTime)
+			.append(",\"decidedSlots\":").append(decidedSlots)
+			.append(",\"deliveredCommands\":").append(deliveredCommands);
+		String[] kinds = {"sent", "forwarded", "dropped", "bytesSent", "bytesForwarded", "bytesDropped"};
+		for (int kind = 0; kind < kinds.length; kind++) {
+			buffer.append(",\"").append(kinds[kind]).append("\":{");
+			boolean first = true;
+			for (Map.Entry<Class<?>, long[]> e : messages.entrySet()) {
+				if (!first) {
+					buffer.append(',');
+				}
+				first = false;
+				buffer.append('"').append(e.getKey().getSimpleName()).append("\":").append(e.getValue()[kind]);
+			}
+			buffer.append('}');
+		}
+		buffer.append(",\"phase1\":{\"count\":").append(phase1.count()).append(",\"mean\":").append(phase1.mean())
+			.append(",\"p99\":").append(phase1.percentile(0.99)).append('}');
+		buffer.append(",\"phase2\":{\"count\":").append(phase2.count()).append(",\"mean\":").append(phase2.mean())
+			.append(",\"p99\":").append(phase2.percentile(0.99)).append('}');
+		buffer.append(",\"inbox\":[");
+		for (int id = 1; id <= maxNodeId; id++) {
+			if (id > 1) {
+				buffer.append(',');
+			}
+			buffer.append(inboxSizes[id]);
+		}
+		buffer.append("]}\n");
+	}
+
+	private static void flush() {
+		try {
+			if (out == null) {
+				out = new FileWriter(PaxosConfig.metricsFile);
+			}
+			out.write(buffer.toString());
+			out.flush();
+		} catch (IOException e) {
+			Main.fatalError("Cannot write the metrics file " + PaxosConfig.metricsFile + ": " + e.getMessage());
+		}
+		buffer.setLength(0);
+		bufferedRows = 0;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos;
+
+import sinalgo.configuration.Configuration;
+import sinalgo.configuration.CorruptConfigurationEntryException;
+import sinalgo.runtime.Main;
+
+/**
+ * Protocol parameters, read from the <code>Paxos</code> entry of the
+ * <code>Custom</code> section of the configuration file. Attributes that
+ * are not present keep the defaults given here.
+ */
+public class PaxosConfig {
+	/** If true, the distinguished proposer keeps opening new log slots (Multi-Paxos). */
+	public static boolean multiPaxos = false;
+	/** Maximal number of undecided slots the distinguished proposer keeps in flight. */
+	public static int pipelineWindow = 1;
+	/** Maximal number of client commands proposed together in one slot. */
+	public static int batchSize = 1;
+	/** Rounds a client command may wait for its batch to fill up before it is proposed anyway. */
+	public static int maxBatchDelay = 0;
+	/** Client commands arriving at the distinguished proposer per round. */
+	public static int commandsPerRound = 1;
+	/** If true, addressed messages follow learnt next hops instead of being flooded. */
+	public static boolean unicastRouting = false;
+	/** Number of acceptors per group; 0 counts the deployed PaxosNodes of the group. */
+	public static int clusterSize = 0;
+	/** Phase 1 quorum size; 0 derives it from the phase 2 quorum or uses a majority. */
+	public static int phase1Quorum = 0;
+	/** Phase 2 quorum size; 0 derives it from the phase 1 quorum or uses a majority. */
+	public static int phase2Quorum = 0;
+	/** Number of timestamps per origin a BackboneNode remembers to drop duplicates. */
+	public static int dedupWindow = 64;
+	/** Rounds the proposer waits for acks before it first resends a phase. */
+	public static int retransmitTimeout = 30;
+	/** Upper bound for the exponentially growing retransmission timeout. */
+	public static int maxRetransmitTimeout = 480;
+	/** Rounds between two heartbeats of the leader. */
+	public static int heartbeatInterval = 10;
+	/** Rounds without a sign of the leader after which a node suspects it has failed. */
+	public static int leaderTimeout = 50;
+	/** Acceptor stable storage: <code>memory</code> or <code>wal</code> (write-ahead log file). */
+	public static String acceptorStorage = "memory";
+	/** Folder of the acceptor write-ahead logs. */
+	public static String walDirectory = "wal";
+	/** If true, all acks of a round share one sync of the write-ahead log. */
+	public static boolean walGroupCommit = true;
+	/** If true, nodes replay existing write-ahead logs on startup instead of discarding them. */
+	public static boolean walRecover = false;
+	/** Learners snapshot the state machine and drop the log prefix every that many slots; 0 disables it. */
+	public static int snapshotInterval = 1000;
+	/** Maximum number of slots a node sends in one LearnRangeMessage. */
+	public static int catchUpBatch = 64;
+	/** File the per-round metrics are streamed to; empty disables the export. */
+	public static String metricsFile = "";
+	/** Format of the metrics file: <code>csv</code> or <code>json</code> (one object per line). */
+	public static String metricsFormat = "csv";
+	/** Rounds between two rows of the metrics file. */
+	public static int metricsInterval = 1;
+	/** Maximal number of metrics rows held in memory before they are written out. */
+	public static int metricsBuffer = 256;
+	/** The simulation terminates once that many slots are decided; 0 runs until stopped. */
+	public static int targetDecisions = 0;
+	/** Probability that a running PaxosNode crashes in a round. */
+	public static double crashRate = 0;
+	/** Probability that a crashed PaxosNode recovers in a round. */
+	public static double recoverRate = 0.05;
+	/** How BackboneNodes spread broadcasts: <code>flood</code> or <code>tree</code> (spanning tree with gossip fallback). */
+	public static String dissemination = "flood";
+	/** Rounds between two spanning tree beacons of a BackboneNode. */
+	public static int treeBeaconInterval = 10;
+	/** Probability that a BackboneNode repairing its tree edges floods a message. */
+	public static double gossipProbability = 0.7;
+	/** Rounds of a read lease granted by a heartbeat; 0 disables leases. Should exceed heartbeatInterval plus the round trip time. */
+	public static int leaseDuration = 0;
+	/** Bound on the relative clock drift; lease holders shorten and acceptors stretch leases by that fraction. */
+	public static double clockDrift = 0.05;
+	/** Client reads arriving at the distinguished proposer per round. */
+	public static int readsPerRound = 0;
+	/** Arrival process of a ClientNode: <code>closed</code> (fixed number outstanding) or <code>poisson</code> (open loop). */
+	public static String clientLoad = "closed";
+	/** Number of commands a closed-loop ClientNode keeps outstanding. */
+	public static int clientOutstanding = 1;
+	/** Mean number of commands an open-loop ClientNode issues per round. */
+	public static double clientRate = 0.1;
+	/** Rounds a ClientNode waits for the reply to a command before it sends it again. */
+	public static int clientTimeout = 100;
+	/** Number of independent Paxos groups; PaxosNode <code>i</code> belongs to group <code>i % groups</code>. */
+	public static int groups = 1;
+	/** Number of distinct keys the generated commands write to. */
+	public static int keys = 1000;
+	/** Zipf exponent of the key popularity; 0 picks keys uniformly. */
+	public static double keySkew = 0;
+	/** If true, every PaxosNode proposes commands itself and commits them in the EPaxos style, without a leader. */
+	public static boolean leaderless = false;
+	/** Share of the commands of a ClientNode that are reads; served locally by the leader under a lease. */
+	public static double clientReads = 0;
+
+	static {
+		multiPaxos = getBoolean("multiPaxos", multiPaxos);
+		pipelineWindow = Math.max(1, getInteger("pipelineWindow", pipelineWindow));
+		batchSize = Math.max(1, getInteger("batchSize", batchSize));
+		maxBatchDelay = Math.max(0, getInteger("maxBatchDelay", maxBatchDelay));
+		commandsPerRound = Math.max(0, getInteger("commandsPerRound", commandsPerRound));
+		unicastRouting = getBoolean("unicastRouting", unicastRouting);
+		clusterSize = getInteger("clusterSize", clusterSize);
+		phase1Quorum = getInteger("phase1Quorum", phase1Quorum);
+		phase2Quorum = getInteger("phase2Quorum", phase2Quorum);
+		dedupWindow = Math.max(1, getInteger("dedupWindow", dedupWindow));
+		retransmitTimeout = Math.max(1, getInteger("retransmitTimeout", retransmitTimeout));
+		maxRetransmitTimeout = Math.max(retransmitTimeout, getInteger("maxRetransmitTimeout", maxRetransmitTimeout));
+		heartbeatInterval = Math.max(1, getInteger("heartbeatInterval", heartbeatInterval));
+		leaderTimeout = Math.max(heartbeatInterval, getInteger("leaderTimeout", leaderTimeout));
+		acceptorStorage = getString("acceptorStorage", acceptorStorage);
+		walDirectory = getString("walDirectory", walDirectory);
+		walGroupCommit = getBoolean("walGroupCommit", walGroupCommit);
+		walRecover = getBoolean("walRecover", walRecover);
+		snapshotInterval = Math.max(0, getInteger("snapshotInterval", snapshotInterval));
+		catchUpBatch = Math.max(1, getInteger("catchUpBatch", catchUpBatch));
+		metricsFile = getString("metricsFile", metricsFile);
+		metricsFormat = getString("metricsFormat", metricsFormat);
+		metricsInterval = Math.max(1, getInteger("metricsInterval", metricsInterval));
+		metricsBuffer = Math.max(1, getInteger("metricsBuffer", metricsBuffer));
+		targetDecisions = Math.max(0, getInteger("targetDecisions", targetDecisions));
+		crashRate = getDouble("crashRate", crashRate);
+		recoverRate = getDouble("recoverRate", recoverRate);
+		dissemination = getString("dissemination", dissemination);
+		treeBeaconInterval = Math.max(1, getInteger("treeBeaconInterval", treeBeaconInterval));
+		gossipProbability = getDouble("gossipProbability", gossipProbability);
+		leaseDuration = Math.max(0, getInteger("leaseDuration", leaseDuration));
+		clockDrift = Math.max(0, getDouble("clockDrift", clockDrift));
+		readsPerRound = Math.max(0, getInteger("readsPerRound", readsPerRound));
+		clientLoad = getString("clientLoad", clientLoad);
+		clientOutstanding = Math.max(1, getInteger("clientOutstanding", clientOutstanding));
+		clientRate = Math.max(0, getDouble("clientRate", clientRate));
+		clientTimeout = Math.max(1, getInteger("clientTimeout", clientTimeout));
+		groups = Math.max(1, getInteger("groups", groups));
+		keys = Math.max(1, getInteger("keys", keys));
+		keySkew = Math.max(0, getDouble("keySkew", keySkew));
+		leaderless = getBoolean("leaderless", leaderless);
+		clientReads = Math.min(1, Math.max(0, getDouble("clientReads", clientReads)));
+	}
+
+	static boolean getBoolean(String name, boolean defaultValue) {
+		String key = "Paxos/" + name;
+		if (!Configuration.hasParameter(key)) {
+			return defaultValue;
+		}
+		try {
+			return Configuration.getBooleanParameter(key);
+		} catch (CorruptConfigurationEntryException e) {
+			Main.fatalError(e.getMessage());
+			return defaultValue;
+		}
+	}
+
+	static String getString(String name, String defaultValue) {
+		String key = "Paxos/" + name;
+		if (!Configuration.hasParameter(key)) {
+			return defaultValue;
+		}
+		try {
+			return Configuration.getStringParameter(key);
+		} catch (CorruptConfigurationEntryException e) {
+			Main.fatalError(e.getMessage());
+			return defaultValue;
+		}
+	}
+
+	static double getDouble(String name, double defaultValue) {
+		String key = "Paxos/" + name;
+		if (!Configuration.hasParameter(key)) {
+			return defaultValue;
+		}
+		try {
+			return Configuration.getDoubleParameter(key);
+		} catch (CorruptConfigurationEntryException e) {
+			Main.fatalError(e.getMessage());
+			return defaultValue;
+		}
+	}
+
+	static int getInteger(String name, int defaultValue) {
+		String key = "Paxos/" + name;
+		if (!Configuration.hasParameter(key)) {
+			return defaultValue;
+		}
+		try {
+			return Configuration.getIntegerParameter(key);
+		} catch (CorruptConfigurationEntryException e) {
+			Main.fatalError(e.getMessage());
+			return defaultValue;
+		}
+	}
+}
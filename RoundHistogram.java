@@ -0,0 +1,94 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos;
+
+/**
+ * Histogram of latencies measured in rounds. Every whole round up to
+ * <code>maxRounds</code> has its own bucket; longer latencies share one
+ * overflow bucket but still count for the mean and the maximum.
+ */
+public class RoundHistogram {
+	private final long[] buckets;
+	private long count = 0;
+	private double sum = 0;
+	private double max = 0;
+
+	public RoundHistogram(int maxRounds) {
+		buckets = new long[maxRounds + 2];
+	}
+
+	public void record(double rounds) {
+		int bucket = (int) Math.ceil(Math.max(0, rounds));
+		buckets[Math.min(bucket, buckets.length - 1)]++;
+		count++;
+		sum += rounds;
+		max = Math.max(max, rounds);
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public double mean() {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	public double max() {
+		return max;
+	}
+
+	/**
+	 * @return The smallest number of rounds that at least the fraction
+	 * <code>p</code> of all recorded latencies do not exceed; the maximum if
+	 * that falls into the overflow bucket.
+	 */
+	public double percentile(double p) {
+		long rank = (long) Math.ceil(p * count);
+		long seen = 0;
+		for (int i = 0; i < buckets.length - 1; i++) {
+			seen += buckets[i];
+			if (seen >= rank && seen > 0) {
+				return i;
+			}
+		}
+		return max;
+	}
+
+	public String toString() {
+		return "n=" + count + " mean=" + mean() + " p50=" + percentile(0.5) + " p99=" + percentile(0.99) + " max=" + max;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One headless Sinalgo simulation of this project, run in a separate JVM with
+ * the class path of the current one. Must be started from the Sinalgo root
+ * folder.
+ */
+public class BatchRun {
+	public int paxosNodes = 64;
+	public int backboneNodes = 50;
+	public int clientNodes = 0;
+	public int rounds = 500;
+	public String mobilityModel = "RandomDirection";
+	/** Configuration overrides, as <code>Paxos/multiPaxos=true</code>. */
+	public List<String> overwrites = new ArrayList<String>();
+
+	/**
+	 * @return The command line starting the simulation.
+	 */
+	public List<String> command() {
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add("sinalgo.Run");
+		cmd.add("-project");
+		cmd.add("paxos");
+		cmd.add("-batch");
+		cmd.add("-rounds");
+		cmd.add(String.valueOf(rounds));
+		cmd.add("-gen");
+		cmd.add(String.valueOf(paxosNodes));
+		cmd.add("paxos:PaxosNode");
+		cmd.add("Random");
+		cmd.add(mobilityModel);
+		if (backboneNodes > 0) {
+			cmd.add("-gen");
+			cmd.add(String.valueOf(backboneNodes));
+			cmd.add("paxos:BackboneNode");
+			cmd.add("Random");
+			cmd.add(mobilityModel);
+		}
+		if (clientNodes > 0) {
+			cmd.add("-gen");
+			cmd.add(String.valueOf(clientNodes));
+			cmd.add("paxos:ClientNode");
+			cmd.add("Random");
+			cmd.add(mobilityModel);
+		}
+		if (!overwrites.isEmpty()) {
+			cmd.add("-overwrite");
+			cmd.addAll(overwrites);
+		}
+		return cmd;
+	}
+
+	/**
+	 * Runs the simulation to completion.
+	 * @return The lines the simulation printed that start with
+	 * <code>prefix</code>.
+	 */
+	public List<String> run(String prefix) throws IOException, InterruptedException {
+		ProcessBuilder pb = new ProcessBuilder(command());
+		pb.redirectErrorStream(true);
+		Process process = pb.start();
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(prefix)) {
+					lines.add(line);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		int exit = process.waitFor();
+		if (exit != 0) {
+			throw new IOException("Simulation exited with status " + exit + ": " + command());
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs one simulation per cluster size in Multi-Paxos mode and prints the
+ * throughput and commit latency line each run reports on exit. Start from
+ * the Sinalgo root folder with the Sinalgo class path, e.g.
+ * <pre>
+ * java -cp binaries/bin:binaries/jdom.jar projects.paxos.bench.ClusterSizeSweep 8 16 32 64 128
+ * </pre>
+ * Additional configuration overrides may be given after <code>--</code>, e.g.
+ * <code>-- Paxos/phase2Quorum=3</code>.
+ */
+public class ClusterSizeSweep {
+	public static void main(String[] args) throws Exception {
+		int i = 0;
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (; i < args.length && !args[i].equals("--"); i++) {
+			sizes.add(Integer.parseInt(args[i]));
+		}
+		if (sizes.isEmpty()) {
+			for (int n = 8; n <= 128; n *= 2) {
+				sizes.add(n);
+			}
+		}
+		for (int n : sizes) {
+			BatchRun run = new BatchRun();
+			run.paxosNodes = n;
+			run.overwrites.add("Paxos/multiPaxos=true");
+			for (int j = i + 1; j < args.length; j++) {
+				run.overwrites.add(args[j]);
+			}
+			for (String line : run.run("Decided ")) {
+				System.out.println("N=" + n + "\t" + line);
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.util.HashMap;
+
+import projects.paxos.protocol.ReplayWindow;
+
+/**
+ * Cost of the duplicate check a BackboneNode does for every message it
+ * receives, comparing the former <code>HashMap&lt;Node, Integer&gt;</code>
+ * with the {@link ReplayWindow} that replaced it. The message stream interleaves all origins
+ * and delivers every message twice, as flooding over two paths does.
+ * <p>
+ * Run with <code>java projects.paxos.bench.ForwardingBenchmark</code>.
+ */
+public class ForwardingBenchmark {
+	static final int MESSAGES_PER_ORIGIN = 1000;
+
+	public static void main(String[] args) {
+		int[] originCounts = {64, 1000};
+		for (int n : originCounts) {
+			final int origins = n;
+			// stand-ins for the Node keys, hashed by identity like Node
+			final Object[] nodes = new Object[origins];
+			for (int i = 0; i < origins; i++) {
+				nodes[i] = new Object();
+			}
+			Harness.Body body = new Harness.Body() {
+				public void run() {
+					HashMap<Object, Integer> vectorTS = new HashMap<Object, Integer>();
+					long forwarded = 0;
+					for (int ts = 0; ts < MESSAGES_PER_ORIGIN; ts++) {
+						for (int copy = 0; copy < 2; copy++) {
+							for (int o = 0; o < origins; o++) {
+								Object sender = nodes[o];
+								int maxTimestamp = vectorTS.containsKey(sender) ? vectorTS.get(sender) : -1;
+								if (ts > maxTimestamp) {
+									vectorTS.put(sender, ts);
+									forwarded++;
+								}
+							}
+						}
+					}
+					Harness.sink += forwarded;
+				}
+				public int operations() {
+					return 2 * MESSAGES_PER_ORIGIN * origins;
+				}
+			};
+			report(Harness.measure("HashMap<Node, Integer>, origins=" + n, body));
+			body = new Harness.Body() {
+				public void run() {
+					ReplayWindow vectorTS = new ReplayWindow(64);
+					long forwarded = 0;
+					for (int ts = 0; ts < MESSAGES_PER_ORIGIN; ts++) {
+						for (int copy = 0; copy < 2; copy++) {
+							for (int o = 0; o < origins; o++) {
+								if (vectorTS.check(o, ts) == ReplayWindow.FRESH) {
+									forwarded++;
+								}
+							}
+						}
+					}
+					Harness.sink += forwarded;
+				}
+				public int operations() {
+					return 2 * MESSAGES_PER_ORIGIN * origins;
+				}
+			};
+			report(Harness.measure("ReplayWindow(64), origins=" + n, body));
+		}
+	}
+
+	static void report(double nsPerMessage) {
+		System.out.println(String.format("%-50s %10.0f msg/s", "  sustained relay rate", 1e9 / nsPerMessage));
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import projects.paxos.nodes.messages.AcceptMessage;
+import projects.paxos.nodes.messages.CommitMessage;
+import projects.paxos.nodes.messages.HeartbeatMessage;
+import projects.paxos.nodes.messages.PrepareMessage;
+import projects.paxos.nodes.messages.TimestampedMessage;
+import projects.paxos.nodes.nodeImplementations.BackboneNode;
+import projects.paxos.nodes.nodeImplementations.PaxosNode;
+import projects.paxos.protocol.Batch;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+
+/**
+ * Cost per message of the PaxosNode and BackboneNode message handlers,
+ * driven with synthetic messages of one type at a time. Outgoing messages
+ * are not handed to the simulator; instead every one is cloned once per
+ * neighbor, as a broadcast to <code>fanOut</code> neighbors does, so that
+ * the per-hop copy shows up in the allocation rate. Acks are flushed every
+ * <code>MESSAGES_PER_ROUND</code> messages, like at the end of a round.
+ * <p>
+ * Start from the Sinalgo root folder with the Sinalgo class path, e.g.
+ * <code>java -cp binaries/bin:binaries/jdom.jar projects.paxos.bench.HandlerBenchmark</code>,
+ * and compare the output between versions to catch regressions.
+ */
+public class HandlerBenchmark {
+	static final int MESSAGES = 20000;
+	static final int MESSAGES_PER_ROUND = 16;
+	static final Batch VALUE = new Batch("A");
+
+	static int fanOut = 1;
+
+	/** A PaxosNode whose messages go nowhere. */
+	static class SinkPaxosNode extends PaxosNode {
+		protected void transmit(Message msg, Node hop) {
+			copies(msg);
+		}
+	}
+
+	/** A BackboneNode whose messages go nowhere. */
+	static class SinkBackboneNode extends BackboneNode {
+		protected void transmit(Message msg, Node hop) {
+			copies(msg);
+		}
+	}
+
+	static void copies(Message msg) {
+		for (int i = 0; i < fanOut; i++) {
+			Harness.sink += System.identityHashCode(msg.clone());
+		}
+	}
+
+	/** Creates the i-th message of a stream sent by <code>origin</code>. */
+	interface Stream {
+		TimestampedMessage create(Node origin, int i);
+	}
+
+	public static void main(String[] args) {
+		final Node origin = new SinkPaxosNode();
+		Stream prepare = new Stream() {
+			public TimestampedMessage create(Node origin, int i) {
+				return new PrepareMessage(origin, null, i, i + 1, 0);
+			}
+		};
+		Stream accept = new Stream() {
+			public TimestampedMessage create(Node origin, int i) {
+				return new AcceptMessage(origin, null, i, 1, i, VALUE, i);
+			}
+		};
+		Stream heartbeat = new Stream() {
+			public TimestampedMessage create(Node origin, int i) {
+				return new HeartbeatMessage(origin, null, i, 1, -1);
+			}
+		};
+		// every slot is accepted, then decided by a standalone commit
+		// notification, as at the end of a burst
+		Stream commit = new Stream() {
+			public TimestampedMessage create(Node origin, int i) {
+				if (i % 2 == 0) {
+					return new AcceptMessage(origin, null, i, 1, i / 2, VALUE, i / 2);
+				}
+				return new CommitMessage(origin, null, i, 1, i / 2 + 1);
+			}
+		};
+		int[] fanOuts = {1, 4, 16};
+		for (int f : fanOuts) {
+			fanOut = f;
+			paxos("PaxosNode PrepareMessage, fanOut=" + f, origin, prepare);
+			paxos("PaxosNode AcceptMessage, fanOut=" + f, origin, accept);
+			paxos("PaxosNode HeartbeatMessage, fanOut=" + f, origin, heartbeat);
+			paxos("PaxosNode AcceptMessage+CommitMessage, fanOut=" + f, origin, commit);
+			backbone("BackboneNode fresh AcceptMessage, fanOut=" + f, origin, accept, 1);
+			backbone("BackboneNode AcceptMessage twice, fanOut=" + f, origin, accept, 2);
+		}
+	}
+
+	static TimestampedMessage[] messages(Node origin, Stream stream) {
+		TimestampedMessage[] msgs = new TimestampedMessage[MESSAGES];
+		for (int i = 0; i < MESSAGES; i++) {
+			msgs[i] = stream.create(origin, i);
+		}
+		return msgs;
+	}
+
+	static void paxos(String name, final Node origin, Stream stream) {
+		final TimestampedMessage[] msgs = messages(origin, stream);
+		Harness.measure(name, new Harness.Body() {
+			public void run() {
+				PaxosNode node = new SinkPaxosNode();
+				for (int i = 0; i < msgs.length; i++) {
+					node.handle(msgs[i], origin);
+					if (i % MESSAGES_PER_ROUND == MESSAGES_PER_ROUND - 1) {
+						node.sendPendingAcks();
+					}
+				}
+				node.sendPendingAcks();
+			}
+			public int operations() {
+				return msgs.length;
+			}
+		});
+	}
+
+	/**
+	 * @param copies How often every message arrives, e.g. 2 if it is
+	 * flooded over two paths.
+	 */
+	static void backbone(String name, final Node origin, Stream stream, final int copies) {
+		final TimestampedMessage[] msgs = messages(origin, stream);
+		Harness.measure(name, new Harness.Body() {
+			public void run() {
+				BackboneNode node = new SinkBackboneNode();
+				for (int i = 0; i < msgs.length; i++) {
+					for (int c = 0; c < copies; c++) {
+						node.relay(msgs[i], origin);
+					}
+				}
+			}
+			public int operations() {
+				return copies * msgs.length;
+			}
+		});
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Minimal micro benchmark harness for the benchmarks in this package. Each
+ * benchmark is run for a number of warm-up iterations, then timed; the
+ * allocation rate is taken from the HotSpot thread allocation counter when
+ * it is available.
+ */
+public class Harness {
+	public static int warmupIterations = 5;
+	public static int measuredIterations = 10;
+
+	/** A benchmark body; performs <code>operations()</code> operations per call. */
+	public interface Body {
+		void run();
+		int operations();
+	}
+
+	/** Prevents the JIT from removing benchmark results. */
+	public static volatile long sink;
+
+	/**
+	 * Runs <code>body</code> and prints ns/op and bytes/op in one line.
+	 * @return The measured ns/op.
+	 */
+	public static double measure(String name, Body body) {
+		for (int i = 0; i < warmupIterations; i++) {
+			body.run();
+		}
+		long bytesBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < measuredIterations; i++) {
+			body.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		long bytes = allocatedBytes() - bytesBefore;
+		double ops = (double) measuredIterations * body.operations();
+		String allocation = bytesBefore < 0 ? "n/a" : String.format("%.1f", bytes / ops);
+		System.out.println(String.format("%-50s %10.2f ns/op %10s B/op", name, elapsed / ops, allocation));
+		return elapsed / ops;
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
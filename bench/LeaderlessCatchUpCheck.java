@@ -0,0 +1,141 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import projects.paxos.PaxosConfig;
+import projects.paxos.nodes.messages.TimestampedMessage;
+import projects.paxos.nodes.nodeImplementations.PaxosNode;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+
+/**
+ * Checks that a replica of the leaderless mode that was crashed while
+ * instances were committed fetches the missed commits after it recovers and
+ * executes as many instances as its peers. All commands write the same key,
+ * so the later instances depend on the missed ones. The nodes are wired to
+ * each other directly, as in {@link LeaderlessQuorumCheck}; a crashed node
+ * receives nothing. Start from the Sinalgo root folder with the Sinalgo
+ * class path, e.g.
+ * <code>java -cp binaries/bin:binaries/jdom.jar projects.paxos.bench.LeaderlessCatchUpCheck</code>;
+ * the exit code is 1 if the check fails.
+ */
+public class LeaderlessCatchUpCheck {
+	static final int NODES = 5;
+	static final int ROUNDS = 20;
+	static final List<TimestampedMessage> wire = new ArrayList<TimestampedMessage>();
+	static final Set<PaxosNode> crashed = new HashSet<PaxosNode>();
+
+	/** A PaxosNode whose messages are put on the wire. */
+	static class WiredPaxosNode extends PaxosNode {
+		protected void transmit(Message msg, Node hop) {
+			wire.add((TimestampedMessage) msg);
+		}
+	}
+
+	public static void main(String[] args) {
+		PaxosConfig.leaderless = true;
+		PaxosConfig.clusterSize = NODES;
+		PaxosConfig.commandsPerRound = NODES;
+		PaxosConfig.batchSize = 1;
+		PaxosConfig.keys = 1;
+		PaxosNode[] nodes = new PaxosNode[NODES];
+		for (int i = 0; i < NODES; i++) {
+			nodes[i] = new WiredPaxosNode();
+		}
+		PaxosNode lagging = nodes[NODES - 1];
+
+		// two instances are committed while the last node is down
+		lagging.crash();
+		crashed.add(lagging);
+		for (int i = 0; i < 2; i++) {
+			round(nodes, nodes[0], false);
+		}
+		lagging.recover();
+		crashed.remove(lagging);
+		for (int i = 0; i < ROUNDS; i++) {
+			round(nodes, nodes[i % 2], i % 5 == 0);
+		}
+
+		boolean ok = true;
+		StringBuilder executed = new StringBuilder();
+		for (PaxosNode node : nodes) {
+			executed.append(' ').append(node.ID).append('=').append(node.getDecidedSlots());
+			ok &= node.getDecidedSlots() == nodes[0].getDecidedSlots();
+		}
+		ok &= nodes[0].getDecidedSlots() > 2;
+		System.out.println("executed instances:" + executed + ": " + (ok ? "ok" : "FAILED"));
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Lets <code>proposer</code> propose one command, and every node report
+	 * its executed prefix if <code>tick</code> is set, then delivers messages
+	 * until none are left.
+	 */
+	static void round(PaxosNode[] nodes, PaxosNode proposer, boolean tick) {
+		Global.currentTime += PaxosConfig.retransmitTimeout;
+		proposer.preStep();
+		if (tick) {
+			for (PaxosNode node : nodes) {
+				node.tick();
+			}
+		}
+		while (!wire.isEmpty()) {
+			List<TimestampedMessage> msgs = new ArrayList<TimestampedMessage>(wire);
+			wire.clear();
+			for (TimestampedMessage msg : msgs) {
+				for (PaxosNode node : nodes) {
+					if (crashed.contains(node) || (msg.finalDestination != null && msg.finalDestination != node)) {
+						continue;
+					}
+					node.handle(msg, msg.originalSender);
+				}
+				for (PaxosNode node : nodes) {
+					node.sendPendingAcks();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the single-leader mode and the leaderless mode side by side, for
+ * every given key skew, and prints throughput, commit latency and how the
+ * load spreads over the nodes. Start from the Sinalgo root folder with the
+ * Sinalgo class path, e.g.
+ * <pre>
+ * java -cp binaries/bin:binaries/jdom.jar projects.paxos.bench.LeaderlessComparison 0 0.99
+ * </pre>
+ * The arguments are Zipf exponents for the key popularity, 0 being
+ * uniform. The number of PaxosNodes defaults to 5 and is set with
+ * <code>-n</code>. Additional configuration overrides may be given after
+ * <code>--</code>, e.g. <code>-- Paxos/keys=100</code>.
+ */
+public class LeaderlessComparison {
+	public static void main(String[] args) throws Exception {
+		int nodes = 5;
+		int i = 0;
+		List<String> skews = new ArrayList<String>();
+		for (; i < args.length && !args[i].equals("--"); i++) {
+			if (args[i].equals("-n")) {
+				nodes = Integer.parseInt(args[++i]);
+			} else {
+				skews.add(args[i]);
+			}
+		}
+		if (skews.isEmpty()) {
+			skews.add("0");
+			skews.add("0.99");
+		}
+		System.out.println(Sweep.join(new String[] {"mode", "keySkew", "decisions/round", "commands/round", 
+			"commitP50", "commitP99", "fastPath", "paxosLoadMax", "backboneLoadMax"}));
+		for (String skew : skews) {
+			for (boolean leaderless : new boolean[] {false, true}) {
+				BatchRun run = new BatchRun();
+				run.paxosNodes = nodes;
+				run.overwrites.add("Paxos/multiPaxos=true");
+				run.overwrites.add("Paxos/leaderless=" + leaderless);
+				run.overwrites.add("Paxos/keySkew=" + skew);
+				for (int j = i + 1; j < args.length; j++) {
+					run.overwrites.add(args[j]);
+				}
+				String mode = leaderless ? "leaderless" : "leader";
+				Map<String, Double> r = new Sweep.Simulation(run).call();
+				if (r == null) {
+					System.out.println(mode + "\t" + skew + "\tfailed");
+					continue;
+				}
+				double rounds = Math.max(1, r.get("rounds"));
+				System.out.println(Sweep.join(new String[] {mode, skew, Sweep.format(r.get("decided") / rounds), 
+					Sweep.format(r.get("commands") / rounds), Sweep.format(r.get("commitP50")), 
+					Sweep.format(r.get("commitP99")), Sweep.format(r.get("fastPath")), 
+					Sweep.format(r.get("paxosLoadMax")), Sweep.format(r.get("backboneLoadMax"))}));
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import projects.paxos.Cluster;
+import projects.paxos.PaxosConfig;
+import projects.paxos.nodes.messages.PreAcceptAckMessage;
+import projects.paxos.nodes.messages.TimestampedMessage;
+import projects.paxos.nodes.nodeImplementations.PaxosNode;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+
+/**
+ * Checks that a command leader of the leaderless mode commits an instance
+ * only after <code>fastQuorum - 1</code> distinct other replicas answered
+ * its PreAccept, even though the backbone echoes the PreAccept back to it.
+ * The nodes are wired to each other directly; a broadcast reaches every
+ * node, the sender included. Start from the Sinalgo root folder with the
+ * Sinalgo class path, e.g.
+ * <code>java -cp binaries/bin:binaries/jdom.jar projects.paxos.bench.LeaderlessQuorumCheck</code>;
+ * the exit code is 1 if the check fails.
+ */
+public class LeaderlessQuorumCheck {
+	static final int NODES = 5;
+	static final List<TimestampedMessage> wire = new ArrayList<TimestampedMessage>();
+
+	/** A PaxosNode whose messages are put on the wire. */
+	static class WiredPaxosNode extends PaxosNode {
+		protected void transmit(Message msg, Node hop) {
+			wire.add((TimestampedMessage) msg);
+		}
+	}
+
+	public static void main(String[] args) {
+		PaxosConfig.leaderless = true;
+		PaxosConfig.clusterSize = NODES;
+		PaxosConfig.commandsPerRound = NODES;
+		PaxosConfig.batchSize = 1;
+		PaxosNode[] nodes = new PaxosNode[NODES];
+		for (int i = 0; i < NODES; i++) {
+			nodes[i] = new WiredPaxosNode();
+		}
+		PaxosNode leader = nodes[0];
+		int remoteAcks = Cluster.fastQuorum(0) - 1;
+
+		// the PreAccept reaches all nodes, the leader included, and the
+		// acks queue up in the order they were sent
+		leader.preStep();
+		List<TimestampedMessage> preAccepts = drain();
+		for (TimestampedMessage msg : preAccepts) {
+			for (PaxosNode node : nodes) {
+				node.handle(msg, msg.originalSender);
+			}
+		}
+		List<TimestampedMessage> acks = drain();
+		int delivered = 0;
+		for (TimestampedMessage msg : acks) {
+			if (!(msg instanceof PreAcceptAckMessage) || msg.finalDestination != leader) {
+				continue;
+			}
+			if (leader.getFastCommits() > 0) {
+				break;
+			}
+			leader.handle(msg, msg.originalSender);
+			if (msg.originalSender != leader) {
+				delivered++;
+			}
+		}
+		boolean ok = leader.getFastCommits() == 1 && delivered == remoteAcks;
+		System.out.println("fastQuorum=" + Cluster.fastQuorum(0) + ", committed after " + delivered 
+			+ " remote PreAcceptAcks: " + (ok ? "ok" : "FAILED"));
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	static List<TimestampedMessage> drain() {
+		List<TimestampedMessage> msgs = new ArrayList<TimestampedMessage>(wire);
+		wire.clear();
+		return msgs;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import projects.paxos.protocol.QuorumTracker;
+
+/**
+ * Compares the boxed <code>HashSet&lt;Integer&gt;</code> vote counting that
+ * PaxosNode used to do with {@link QuorumTracker}. Each operation is one
+ * vote followed by a quorum check, for proposals collecting votes from all
+ * N acceptors in random order.
+ * <p>
+ * Run with <code>java projects.paxos.bench.QuorumTrackerBenchmark</code>.
+ */
+public class QuorumTrackerBenchmark {
+	static final int PROPOSALS = 100;
+
+	public static void main(String[] args) {
+		int[] sizes = {64, 1000, 10000};
+		for (int n : sizes) {
+			final int nodes = n;
+			final int[] order = shuffledIds(n);
+			Harness.measure("HashSet<Integer>, N=" + n, new Harness.Body() {
+				public void run() {
+					long quorums = 0;
+					for (int p = 0; p < PROPOSALS; p++) {
+						Set<Integer> votes = new HashSet<Integer>();
+						for (int id : order) {
+							votes.add(id);
+							if (votes.size() > nodes / 2) {
+								quorums++;
+							}
+						}
+					}
+					Harness.sink += quorums;
+				}
+				public int operations() {
+					return PROPOSALS * nodes;
+				}
+			});
+			final QuorumTracker tracker = new QuorumTracker();
+			Harness.measure("QuorumTracker, N=" + n, new Harness.Body() {
+				public void run() {
+					long quorums = 0;
+					for (int p = 0; p < PROPOSALS; p++) {
+						tracker.reset(p);
+						for (int id : order) {
+							tracker.add(id);
+							if (tracker.size() > nodes / 2) {
+								quorums++;
+							}
+						}
+					}
+					Harness.sink += quorums;
+				}
+				public int operations() {
+					return PROPOSALS * nodes;
+				}
+			});
+		}
+	}
+
+	static int[] shuffledIds(int n) {
+		int[] ids = new int[n];
+		for (int i = 0; i < n; i++) {
+			ids[i] = i + 1;
+		}
+		Random random = new Random(42);
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int t = ids[i];
+			ids[i] = ids[j];
+			ids[j] = t;
+		}
+		return ids;
+	}
+}
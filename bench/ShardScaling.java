@@ -0,0 +1,99 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs one simulation per number of Paxos groups, with the same number of
+ * PaxosNodes in every group, and prints the aggregate throughput against
+ * the throughput of a single group. Start from the Sinalgo root folder with
+ * the Sinalgo class path, e.g.
+ * <pre>
+ * java -cp binaries/bin:binaries/jdom.jar projects.paxos.bench.ShardScaling 1 2 4 8 16
+ * </pre>
+ * The group size defaults to 5 and is set with <code>-n</code>, e.g.
+ * <code>-n 7 1 2 4</code>. Additional configuration overrides may be given
+ * after <code>--</code>, e.g. <code>-- Paxos/commandsPerRound=4</code>.
+ */
+public class ShardScaling {
+	public static void main(String[] args) throws Exception {
+		int groupSize = 5;
+		int i = 0;
+		List<Integer> groups = new ArrayList<Integer>();
+		for (; i < args.length && !args[i].equals("--"); i++) {
+			if (args[i].equals("-n")) {
+				groupSize = Integer.parseInt(args[++i]);
+			} else {
+				groups.add(Integer.parseInt(args[i]));
+			}
+		}
+		if (groups.isEmpty()) {
+			for (int g = 1; g <= 16; g *= 2) {
+				groups.add(g);
+			}
+		}
+		System.out.println(Sweep.join(new String[] {"groups", "nodes", "decisions/round", "commands/round", 
+			"messages/decision", "commitP99", "speedup"}));
+		double base = 0;
+		for (int g : groups) {
+			BatchRun run = new BatchRun();
+			run.paxosNodes = g * groupSize;
+			run.overwrites.add("Paxos/multiPaxos=true");
+			run.overwrites.add("Paxos/groups=" + g);
+			for (int j = i + 1; j < args.length; j++) {
+				run.overwrites.add(args[j]);
+			}
+			Map<String, Double> r = new Sweep.Simulation(run).call();
+			if (r == null) {
+				System.out.println(g + "\t" + run.paxosNodes + "\tfailed");
+				continue;
+			}
+			double rounds = Math.max(1, r.get("rounds"));
+			double decisions = r.get("decided") / rounds;
+			if (base == 0) {
+				base = decisions;
+			}
+			System.out.println(Sweep.join(new String[] {String.valueOf(g), String.valueOf(run.paxosNodes), 
+				Sweep.format(decisions), Sweep.format(r.get("commands") / rounds), 
+				Sweep.format(r.get("decided") == 0 ? 0 : r.get("messages") / r.get("decided")), 
+				Sweep.format(r.get("commitP99")), Sweep.format(base == 0 ? 0 : decisions / base)}));
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless parameter sweep. Runs the cross product of node counts, backbone
+ * radii, message delay distributions and crash rates in Multi-Paxos mode,
+ * each with several fixed seeds, as separate simulations in parallel, and
+ * prints one line per parameter combination with the throughput and commit
+ * latency averaged over the seeds. Start from the Sinalgo root folder with
+ * the Sinalgo class path, e.g.
+ * <pre>
+ * java -cp binaries/bin:binaries/jdom.jar projects.paxos.bench.Sweep nodes=16,32 rMax=150,250 \
+ *     delay=Constant:1,Uniform:1:10 crashRate=0,0.001 seeds=5 rounds=1000 report=baseline.tsv
+ * </pre>
+ * A delay is <code>Constant:c</code>, <code>Uniform:min:max</code>,
+ * <code>Gaussian:mean:variance</code>, <code>Exponential:lambda</code> or
+ * <code>Poisson:lambda</code> or, for the size and load dependent model,
+ * <code>Bandwidth:bytesPerRound:latency:jitter</code>. Other parameters are <code>backbone</code>
+ * (number of BackboneNodes), <code>clients</code> (number of ClientNodes),
+ * <code>mobility</code> and <code>threads</code> (defaults to the number of
+ * cores). Additional configuration overrides may be given after
+ * <code>--</code>.
+ */
+public class Sweep {
+	static final String[] COLUMNS = {"nodes", "rMax", "delay", "crashRate", "runs", "failed", 
+		"decisions/round", "sd", "commands/round", "reads/round", "messages/decision", "bytes/decision", "commitMean", "commitP50", "commitP99", "crashes", 
+		"clientOps/round", "clientP50", "clientP99"};
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String[]> params = new LinkedHashMap<String, String[]>();
+		params.put("nodes", new String[] {"16"});
+		params.put("rMax", new String[] {"250"});
+		params.put("delay", new String[] {"Uniform:1:10"});
+		params.put("crashRate", new String[] {"0"});
+		params.put("seeds", new String[] {"3"});
+		params.put("rounds", new String[] {"1000"});
+		params.put("backbone", new String[] {"50"});
+		params.put("clients", new String[] {"0"});
+		params.put("mobility", new String[] {"RandomDirection"});
+		params.put("threads", new String[] {String.valueOf(Runtime.getRuntime().availableProcessors())});
+		params.put("report", new String[] {""});
+		List<String> extra = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--")) {
+				for (i++; i < args.length; i++) {
+					extra.add(args[i]);
+				}
+				break;
+			}
+			int eq = args[i].indexOf('=');
+			if (eq < 0 || !params.containsKey(args[i].substring(0, eq))) {
+				throw new IllegalArgumentException("Unknown parameter " + args[i]);
+			}
+			params.put(args[i].substring(0, eq), args[i].substring(eq + 1).split(","));
+		}
+		int seeds = Integer.parseInt(params.get("seeds")[0]);
+		int threads = Integer.parseInt(params.get("threads")[0]);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<String[]> points = new ArrayList<String[]>();
+		List<List<Future<Map<String, Double>>>> results = new ArrayList<List<Future<Map<String, Double>>>>();
+		for (String nodes : params.get("nodes")) {
+			for (String rMax : params.get("rMax")) {
+				for (String delay : params.get("delay")) {
+					for (String crashRate : params.get("crashRate")) {
+						points.add(new String[] {nodes, rMax, delay, crashRate});
+						List<Future<Map<String, Double>>> runs = new ArrayList<Future<Map<String, Double>>>();
+						for (int seed = 1; seed <= seeds; seed++) {
+							BatchRun run = new BatchRun();
+							run.paxosNodes = Integer.parseInt(nodes);
+							run.backboneNodes = Integer.parseInt(params.get("backbone")[0]);
+							run.clientNodes = Integer.parseInt(params.get("clients")[0]);
+							run.rounds = Integer.parseInt(params.get("rounds")[0]);
+							run.mobilityModel = params.get("mobility")[0];
+							run.overwrites.add("useFixedSeed=true");
+							run.overwrites.add("fixedSeed=" + seed);
+							run.overwrites.add("UDG/rMax=" + rMax);
+							run.overwrites.add("GeometricNodeCollection/rMax=" + rMax);
+							run.overwrites.addAll(delayOverwrites(delay));
+							run.overwrites.add("Paxos/multiPaxos=true");
+							run.overwrites.add("Paxos/crashRate=" + crashRate);
+							run.overwrites.addAll(extra);
+							runs.add(pool.submit(new Simulation(run)));
+						}
+						results.add(runs);
+					}
+				}
+			}
+		}
+
+		PrintWriter report = null;
+		if (params.get("report")[0].length() > 0) {
+			report = new PrintWriter(new FileWriter(params.get("report")[0]));
+		}
+		print(join(COLUMNS), report);
+		for (int p = 0; p < points.size(); p++) {
+			List<Map<String, Double>> ok = new ArrayList<Map<String, Double>>();
+			for (Future<Map<String, Double>> f : results.get(p)) {
+				Map<String, Double> r = f.get();
+				if (r != null) {
+					ok.add(r);
+				}
+			}
+			print(summarize(points.get(p), results.get(p).size(), ok), report);
+		}
+		pool.shutdown();
+		if (report != null) {
+			report.close();
+		}
+	}
+
+	/**
+	 * @return The configuration overrides selecting the message transmission
+	 * model for a delay given as <code>Distribution:param:param</code>.
+	 */
+	static List<String> delayOverwrites(String delay) {
+		String[] d = delay.split(":");
+		List<String> o = new ArrayList<String>();
+		if (d[0].equals("Constant")) {
+			o.add("DefaultMessageTransmissionModel=ConstantTime");
+			o.add("MessageTransmission/ConstantTime=" + d[1]);
+			return o;
+		}
+		if (d[0].equals("Bandwidth")) {
+			if (d.length != 4) {
+				throw new IllegalArgumentException("Delay " + delay + " needs 3 parameters");
+			}
+			o.add("DefaultMessageTransmissionModel=paxos:BandwidthTime");
+			o.add("BandwidthTime/bandwidth=" + d[1]);
+			o.add("BandwidthTime/latency=" + d[2]);
+			o.add("BandwidthTime/jitter=" + d[3]);
+			return o;
+		}
+		String[] names;
+		if (d[0].equals("Uniform")) {
+			names = new String[] {"min", "max"};
+		} else if (d[0].equals("Gaussian")) {
+			names = new String[] {"mean", "variance"};
+		} else if (d[0].equals("Exponential") || d[0].equals("Poisson")) {
+			names = new String[] {"lambda"};
+		} else {
+			throw new IllegalArgumentException("Unknown delay distribution " + delay);
+		}
+		if (d.length != names.length + 1) {
+			throw new IllegalArgumentException("Delay " + delay + " needs " + names.length + " parameters");
+		}
+		o.add("DefaultMessageTransmissionModel=RandomTime");
+		o.add("RandomMessageTransmission/distribution=" + d[0]);
+		for (int i = 0; i < names.length; i++) {
+			o.add("RandomMessageTransmission/" + names[i] + "=" + d[i + 1]);
+		}
+		return o;
+	}
+
+	static String summarize(String[] point, int runs, List<Map<String, Double>> ok) {
+		double[] throughput = new double[ok.size()];
+		double commands = 0, reads = 0, messages = 0, bytes = 0, decided = 0, mean = 0, p50 = 0, p99 = 0, crashes = 0;
+		double clientOps = 0, clientP50 = 0, clientP99 = 0;
+		for (int i = 0; i < ok.size(); i++) {
+			Map<String, Double> r = ok.get(i);
+			double rounds = Math.max(1, r.get("rounds"));
+			throughput[i] = r.get("decided") / rounds;
+			commands += r.get("commands") / rounds;
+			reads += r.get("reads") / rounds;
+			messages += r.get("messages");
+			bytes += r.get("bytes");
+			decided += r.get("decided");
+			mean += r.get("commitMean");
+			p50 += r.get("commitP50");
+			p99 += r.get("commitP99");
+			crashes += r.get("crashes");
+			clientOps += r.get("clientOps") / rounds;
+			clientP50 += r.get("clientP50");
+			clientP99 += r.get("clientP99");
+		}
+		int n = Math.max(1, ok.size());
+		double avg = 0;
+		for (double t : throughput) {
+			avg += t / n;
+		}
+		double var = 0;
+		for (double t : throughput) {
+			var += (t - avg) * (t - avg) / n;
+		}
+		return join(new String[] {point[0], point[1], point[2], point[3], String.valueOf(runs), 
+			String.valueOf(runs - ok.size()), format(avg), format(Math.sqrt(var)), format(commands / n), format(reads / n), 
+			format(decided == 0 ? 0 : messages / decided), format(decided == 0 ? 0 : bytes / decided), 
+			format(mean / n), format(p50 / n), format(p99 / n), format(crashes / n), 
+			format(clientOps / n), format(clientP50 / n), format(clientP99 / n)});
+	}
+
+	static String format(double d) {
+		return String.format("%.3f", d);
+	}
+
+	static String join(String[] fields) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				s.append('\t');
+			}
+			s.append(fields[i]);
+		}
+		return s.toString();
+	}
+
+	static void print(String line, PrintWriter report) {
+		System.out.println(line);
+		if (report != null) {
+			report.println(line);
+			report.flush();
+		}
+	}
+
+	/**
+	 * One simulation; yields the values of its <code>Result</code> line, or
+	 * <code>null</code> if it failed.
+	 */
+	static class Simulation implements Callable<Map<String, Double>> {
+		final BatchRun run;
+
+		Simulation(BatchRun run) {
+			this.run = run;
+		}
+
+		public Map<String, Double> call() {
+			try {
+				List<String> lines = run.run("Result\t");
+				if (lines.isEmpty()) {
+					System.err.println("No result from " + run.command());
+					return null;
+				}
+				Map<String, Double> values = new LinkedHashMap<String, Double>();
+				String[] fields = lines.get(lines.size() - 1).split("\t");
+				for (int i = 1; i < fields.length; i++) {
+					int eq = fields[i].indexOf('=');
+					values.put(fields[i].substring(0, eq), Double.parseDouble(fields[i].substring(eq + 1)));
+				}
+				return values;
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+				return null;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import projects.paxos.protocol.Batch;
+import projects.paxos.protocol.WriteAheadLog;
+
+/**
+ * Throughput of the acceptor write-ahead log when every accept record is
+ * forced to disk on its own, compared to group commit where all records of
+ * a round share one force. Each simulated round writes one record per slot
+ * in flight.
+ * <p>
+ * Run with <code>java projects.paxos.bench.WalBenchmark [rounds] [recordsPerRound] [batchSize]</code>.
+ */
+public class WalBenchmark {
+	public static void main(String[] args) throws IOException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int recordsPerRound = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		String[] commands = new String[batchSize];
+		for (int i = 0; i < batchSize; i++) {
+			commands[i] = "command-" + i;
+		}
+		Batch value = new Batch(commands);
+		for (boolean groupCommit : new boolean[] {false, true}) {
+			File file = File.createTempFile("paxos-wal", ".wal");
+			WriteAheadLog wal = new WriteAheadLog(file, false);
+			long start = System.nanoTime();
+			int slot = 0;
+			for (int r = 0; r < rounds; r++) {
+				for (int i = 0; i < recordsPerRound; i++) {
+					wal.accept(slot++, 1, value);
+					if (!groupCommit) {
+						wal.sync();
+					}
+				}
+				wal.sync();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-24s %8d records %8d syncs %12.0f records/s", 
+					groupCommit ? "group commit" : "sync per record", slot, wal.syncCount(), slot / seconds));
+			wal.close();
+			file.delete();
+		}
+	}
+}
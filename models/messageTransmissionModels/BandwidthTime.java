@@ -0,0 +1,143 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.models.messageTransmissionModels;
+
+import java.util.Arrays;
+
+import projects.paxos.Metrics;
+import projects.paxos.nodes.messages.TimestampedMessage;
+import sinalgo.configuration.Configuration;
+import sinalgo.configuration.CorruptConfigurationEntryException;
+import sinalgo.models.MessageTransmissionModel;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+import sinalgo.runtime.Main;
+import sinalgo.tools.Tools;
+
+/**
+ * Message delay that depends on message size and load. Every node sends
+ * over one link of <code>bandwidth</code> bytes per round, one message at a
+ * time: a message occupies the link for its encoded size plus
+ * <code>headerBytes</code>, divided by the bandwidth, and waits until the
+ * messages sent before it are out. It then arrives after a propagation
+ * delay of <code>latency</code> plus a uniformly random share of up to
+ * <code>jitter</code> rounds. A broadcast is a single transmission that
+ * reaches all neighbors, so relays that flood a lot of traffic queue up.
+ * The simulator does not tell the model whether a message is broadcast, so
+ * nodes broadcast through {@link #broadcast(Node, Message)}; every other
+ * transmission is charged on its own, also when a relay sends the same
+ * message to several tree neighbors.
+ * <p>
+ * Select with <code>paxos:BandwidthTime</code>; the parameters are read from
+ * the <code>BandwidthTime</code> entry of the <code>Custom</code> section.
+ */
+public class BandwidthTime extends MessageTransmissionModel {
+	private double bandwidth = 1000;
+	private double latency = 1;
+	private double jitter = 0;
+	private int headerBytes = 32;
+
+	// per sender ID: the time its link is free again
+	private double[] busyUntil = new double[16];
+
+	// the node whose broadcast is in progress, and whether that broadcast
+	// has been put on the link already
+	private static Node broadcaster = null;
+	private static boolean broadcastCharged = false;
+
+	public BandwidthTime() {
+		bandwidth = get("bandwidth", bandwidth);
+		latency = get("latency", latency);
+		jitter = get("jitter", jitter);
+		headerBytes = (int) get("headerBytes", headerBytes);
+		if (bandwidth <= 0) {
+			Main.fatalError("BandwidthTime/bandwidth must be positive");
+		}
+	}
+
+	public double timeToReach(Node startNode, Node endNode, Message msg) {
+		int id = startNode.ID;
+		if (id >= busyUntil.length) {
+			int n = Math.max(id + 1, 2 * busyUntil.length);
+			busyUntil = Arrays.copyOf(busyUntil, n);
+		}
+		double now = Global.currentTime;
+		boolean shared = startNode == broadcaster;
+		if (!shared || !broadcastCharged) {
+			// a new transmission; the other neighbors of a broadcast share it
+			int bytes = headerBytes + (msg instanceof TimestampedMessage ? ((TimestampedMessage) msg).byteSize() : 0);
+			double start = Math.max(now, busyUntil[id]);
+			busyUntil[id] = start + bytes / bandwidth;
+			Metrics.queueing.record(start - now);
+			broadcastCharged = shared;
+		}
+		double delay = busyUntil[id] - now + latency;
+		if (jitter > 0) {
+			delay += Tools.getRandomNumberGenerator().nextDouble() * jitter;
+		}
+		return delay;
+	}
+
+	/**
+	 * Sends <code>msg</code> from <code>sender</code> to all its neighbors
+	 * as one transmission that they share. Other models just see a
+	 * broadcast.
+	 */
+	public static void broadcast(Node sender, Message msg) {
+		broadcaster = sender;
+		broadcastCharged = false;
+		try {
+			sender.broadcast(msg);
+		} finally {
+			broadcaster = null;
+		}
+	}
+
+	private static double get(String name, double defaultValue) {
+		String key = "BandwidthTime/" + name;
+		if (!Configuration.hasParameter(key)) {
+			return defaultValue;
+		}
+		try {
+			return Configuration.getDoubleParameter(key);
+		} catch (CorruptConfigurationEntryException e) {
+			Main.fatalError(e.getMessage());
+			return defaultValue;
+		}
+	}
+}
@@ -36,23 +36,19 @@
 */
 package projects.paxos.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
+import projects.paxos.protocol.Batch;
+import sinalgo.nodes.Node;
 
 
 public class AcceptAckMessage extends TimestampedMessage {
-	public int number = 0;
-	public String value;
+	public final int number;
+	public final int slot;
+	public final Batch value;
 	
-	public AcceptAckMessage(int n, String v){
+	public AcceptAckMessage(Node origin, Node destination, int ts, int n, int s, Batch v) {
+		super(origin, destination, ts);
 		number = n;
+		slot = s;
 		value = v;
 	}
-	
-	public Message clone(){
-		AcceptAckMessage m = new AcceptAckMessage(this.number, this.value);
-		m.finalDestination = this.finalDestination;
-		m.originalSender = this.originalSender;
-		m.timestamp = this.timestamp;
-		return m;
-	}
 }
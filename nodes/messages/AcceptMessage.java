@@ -36,23 +36,26 @@
 */
 package projects.paxos.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
+import projects.paxos.protocol.Batch;
+import sinalgo.nodes.Node;
 
 
+/**
+ * Phase 2 request. Also carries the commit index of the proposer: every slot
+ * below <code>commit</code> is decided with the value accepted in this
+ * ballot, so acceptors learn earlier decisions without a separate message.
+ */
 public class AcceptMessage extends TimestampedMessage {
-	public int number = 0;
-	public String value;
+	public final int number;
+	public final int slot;
+	public final Batch value;
+	public final int commit;
 	
-	public AcceptMessage(int n, String v){
+	public AcceptMessage(Node origin, Node destination, int ts, int n, int s, Batch v, int c) {
+		super(origin, destination, ts);
 		number = n;
+		slot = s;
 		value = v;
-	}
-	
-	public Message clone(){
-		AcceptMessage m = new AcceptMessage(this.number, this.value);
-		m.finalDestination = this.finalDestination;
-		m.originalSender = this.originalSender;
-		m.timestamp = this.timestamp;
-		return m;
+		commit = c;
 	}
 }
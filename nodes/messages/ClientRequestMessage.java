@@ -36,21 +36,17 @@
 */
 package projects.paxos.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
+import sinalgo.nodes.Node;
 
 
-public class LearnMessage extends TimestampedMessage {
-	public String value;
+/**
+ * Command of a ClientNode, addressed to the node it believes is the leader.
+ */
+public class ClientRequestMessage extends TimestampedMessage {
+	public final String command;
 	
-	public LearnMessage(String v){
-		value = v;
-	}
-	
-	public Message clone(){
-		LearnMessage m = new LearnMessage(this.value);
-		m.finalDestination = this.finalDestination;
-		m.originalSender = this.originalSender;
-		m.timestamp = this.timestamp;
-		return m;
+	public ClientRequestMessage(Node origin, Node destination, int ts, String c) {
+		super(origin, destination, ts);
+		command = c;
 	}
 }
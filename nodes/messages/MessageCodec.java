@@ -0,0 +1,434 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.nodes.messages;
+
+import java.util.Arrays;
+
+import projects.paxos.protocol.Batch;
+import projects.paxos.protocol.Decoder;
+import projects.paxos.protocol.Encoder;
+import projects.paxos.protocol.Snapshot;
+import sinalgo.nodes.Node;
+import sinalgo.tools.Tools;
+
+/**
+ * Binary encoding of all Paxos messages, used to account for their size on
+ * the wire. A message starts with its type, the IDs of its origin and final
+ * destination (0 for none) and its timestamp, followed by its fields.
+ * Numbers are varints; a batch is its number of commands followed by the
+ * length-prefixed UTF-8 commands, with a count of -1 for <code>null</code>.
+ */
+public class MessageCodec {
+	static final int PREPARE = 1;
+	static final int PREPARE_ACK = 2;
+	static final int ACCEPT = 3;
+	static final int ACCEPT_ACK = 4;
+	static final int HEARTBEAT = 6;
+	static final int NACK = 7;
+	static final int LEARN_REQUEST = 8;
+	static final int LEARN_RANGE = 9;
+	static final int SNAPSHOT_REQUEST = 10;
+	static final int SNAPSHOT = 11;
+	static final int COMMIT = 12;
+	static final int LEASE_GRANT = 13;
+	static final int CLIENT_REQUEST = 14;
+	static final int CLIENT_REPLY = 15;
+	static final int PRE_ACCEPT = 16;
+	static final int PRE_ACCEPT_ACK = 17;
+	static final int INSTANCE_ACCEPT = 18;
+	static final int INSTANCE_ACCEPT_ACK = 19;
+	static final int INSTANCE_COMMIT = 20;
+	static final int INSTANCE_REQUEST = 21;
+	static final int INSTANCE_FRONTIER = 22;
+
+	public static byte[] encode(TimestampedMessage m) {
+		Encoder out = new Encoder();
+		write(out, m);
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return The length of the encoding of <code>m</code>, computed without
+	 * building it.
+	 */
+	public static int size(TimestampedMessage m) {
+		Encoder out = Encoder.counter();
+		write(out, m);
+		return out.length();
+	}
+
+	/**
+	 * Decodes a message; node IDs are resolved among the nodes of the running
+	 * simulation.
+	 */
+	public static TimestampedMessage decode(byte[] data) {
+		Decoder in = new Decoder(data);
+		int type = in.readInt();
+		Node origin = node(in.readInt());
+		Node destination = node(in.readInt());
+		int ts = in.readInt();
+		TimestampedMessage m;
+		switch (type) {
+		case PREPARE:
+			m = new PrepareMessage(origin, destination, ts, in.readInt(), in.readInt());
+			break;
+		case PREPARE_ACK: {
+			int number = in.readInt();
+			int slot = in.readInt();
+			int snapshotSlot = in.readInt();
+			int n = in.readInt();
+			int[] slots = new int[n];
+			int[] numbers = new int[n];
+			Batch[] values = new Batch[n];
+			for (int i = 0; i < n; i++) {
+				slots[i] = in.readInt();
+				numbers[i] = in.readInt();
+				values[i] = readBatch(in);
+			}
+			m = new PrepareAckMessage(origin, destination, ts, number, slot, snapshotSlot, slots, numbers, values);
+			break;
+		}
+		case ACCEPT:
+			m = new AcceptMessage(origin, destination, ts, in.readInt(), in.readInt(), readBatch(in), in.readInt());
+			break;
+		case ACCEPT_ACK:
+			m = new AcceptAckMessage(origin, destination, ts, in.readInt(), in.readInt(), readBatch(in));
+			break;
+		case HEARTBEAT:
+			m = new HeartbeatMessage(origin, destination, ts, in.readInt(), in.readInt());
+			break;
+		case NACK:
+			m = new NackMessage(origin, destination, ts, in.readInt());
+			break;
+		case LEARN_REQUEST:
+			m = new LearnRequestMessage(origin, destination, ts, in.readInt(), in.readInt());
+			break;
+		case LEARN_RANGE:
+			m = new LearnRangeMessage(origin, destination, ts, in.readInt(), readBatches(in));
+			break;
+		case COMMIT:
+			m = new CommitMessage(origin, destination, ts, in.readInt(), in.readInt());
+			break;
+		case LEASE_GRANT:
+			m = new LeaseGrantMessage(origin, destination, ts, in.readInt(), in.readInt());
+			break;
+		case CLIENT_REQUEST:
+			m = new ClientRequestMessage(origin, destination, ts, in.readString());
+			break;
+		case CLIENT_REPLY:
+			m = new ClientReplyMessage(origin, destination, ts, in.readString(), in.readInt(), in.readInt(), in.readString());
+			break;
+		case PRE_ACCEPT:
+			m = new PreAcceptMessage(origin, destination, ts, in.readInt(), readBatch(in), in.readInt(), readDeps(in));
+			break;
+		case PRE_ACCEPT_ACK:
+			m = new PreAcceptAckMessage(origin, destination, ts, in.readInt(), in.readInt(), readDeps(in));
+			break;
+		case INSTANCE_ACCEPT:
+			m = new InstanceAcceptMessage(origin, destination, ts, in.readInt(), readBatch(in), in.readInt(), readDeps(in));
+			break;
+		case INSTANCE_ACCEPT_ACK:
+			m = new InstanceAcceptAckMessage(origin, destination, ts, in.readInt());
+			break;
+		case INSTANCE_COMMIT:
+			m = new InstanceCommitMessage(origin, destination, ts, in.readInt(), in.readInt(), readBatch(in), in.readInt(), 
+					readDeps(in));
+			break;
+		case INSTANCE_REQUEST:
+			m = new InstanceRequestMessage(origin, destination, ts, in.readInt(), in.readInt(), in.readInt());
+			break;
+		case INSTANCE_FRONTIER:
+			m = new InstanceFrontierMessage(origin, destination, ts, readDeps(in));
+			break;
+		case SNAPSHOT_REQUEST:
+			m = new SnapshotRequestMessage(origin, destination, ts, in.readInt());
+			break;
+		case SNAPSHOT: {
+			Snapshot snapshot = null;
+			int slot = in.readInt();
+			byte[] state = in.readBytes();
+			if (state != null) {
+				snapshot = new Snapshot(slot, state);
+			}
+			m = new SnapshotMessage(origin, destination, ts, snapshot, in.readInt(), readBatches(in));
+			break;
+		}
+		default:
+			throw new IllegalArgumentException("Unknown message type " + type);
+		}
+		if (!in.done()) {
+			throw new IllegalArgumentException("Trailing bytes after message of type " + type);
+		}
+		return m;
+	}
+
+	private static void write(Encoder out, TimestampedMessage m) {
+		out.writeInt(type(m));
+		out.writeInt(m.originalSender == null ? 0 : m.originalSender.ID);
+		out.writeInt(m.finalDestination == null ? 0 : m.finalDestination.ID);
+		out.writeInt(m.timestamp);
+		if (m instanceof PrepareMessage) {
+			PrepareMessage p = (PrepareMessage) m;
+			out.writeInt(p.number).writeInt(p.slot);
+		} else if (m instanceof PrepareAckMessage) {
+			PrepareAckMessage p = (PrepareAckMessage) m;
+			out.writeInt(p.number).writeInt(p.slot).writeInt(p.snapshotSlot).writeInt(p.acceptedSlots.length);
+			for (int i = 0; i < p.acceptedSlots.length; i++) {
+				out.writeInt(p.acceptedSlots[i]).writeInt(p.acceptedNumbers[i]);
+				writeBatch(out, p.acceptedValues[i]);
+			}
+		} else if (m instanceof AcceptMessage) {
+			AcceptMessage a = (AcceptMessage) m;
+			out.writeInt(a.number).writeInt(a.slot);
+			writeBatch(out, a.value);
+			out.writeInt(a.commit);
+		} else if (m instanceof AcceptAckMessage) {
+			AcceptAckMessage a = (AcceptAckMessage) m;
+			out.writeInt(a.number).writeInt(a.slot);
+			writeBatch(out, a.value);
+		} else if (m instanceof HeartbeatMessage) {
+			HeartbeatMessage h = (HeartbeatMessage) m;
+			out.writeInt(h.number).writeInt(h.slot);
+		} else if (m instanceof NackMessage) {
+			out.writeInt(((NackMessage) m).number);
+		} else if (m instanceof LearnRequestMessage) {
+			LearnRequestMessage r = (LearnRequestMessage) m;
+			out.writeInt(r.from).writeInt(r.to);
+		} else if (m instanceof LearnRangeMessage) {
+			LearnRangeMessage r = (LearnRangeMessage) m;
+			out.writeInt(r.from);
+			writeBatches(out, r.values);
+		} else if (m instanceof CommitMessage) {
+			CommitMessage c = (CommitMessage) m;
+			out.writeInt(c.number).writeInt(c.commit);
+		} else if (m instanceof LeaseGrantMessage) {
+			LeaseGrantMessage g = (LeaseGrantMessage) m;
+			out.writeInt(g.number).writeInt(g.request);
+		} else if (m instanceof ClientRequestMessage) {
+			out.writeString(((ClientRequestMessage) m).command);
+		} else if (m instanceof ClientReplyMessage) {
+			ClientReplyMessage r = (ClientReplyMessage) m;
+			out.writeString(r.command);
+			out.writeInt(r.slot).writeInt(r.leader);
+			out.writeString(r.value);
+		} else if (m instanceof PreAcceptMessage) {
+			PreAcceptMessage p = (PreAcceptMessage) m;
+			out.writeInt(p.instance);
+			writeBatch(out, p.value);
+			out.writeInt(p.seq);
+			writeDeps(out, p.deps);
+		} else if (m instanceof PreAcceptAckMessage) {
+			PreAcceptAckMessage p = (PreAcceptAckMessage) m;
+			out.writeInt(p.instance).writeInt(p.seq);
+			writeDeps(out, p.deps);
+		} else if (m instanceof InstanceAcceptMessage) {
+			InstanceAcceptMessage a = (InstanceAcceptMessage) m;
+			out.writeInt(a.instance);
+			writeBatch(out, a.value);
+			out.writeInt(a.seq);
+			writeDeps(out, a.deps);
+		} else if (m instanceof InstanceAcceptAckMessage) {
+			out.writeInt(((InstanceAcceptAckMessage) m).instance);
+		} else if (m instanceof InstanceCommitMessage) {
+			InstanceCommitMessage c = (InstanceCommitMessage) m;
+			out.writeInt(c.replica).writeInt(c.instance);
+			writeBatch(out, c.value);
+			out.writeInt(c.seq);
+			writeDeps(out, c.deps);
+		} else if (m instanceof InstanceRequestMessage) {
+			InstanceRequestMessage r = (InstanceRequestMessage) m;
+			out.writeInt(r.replica).writeInt(r.from).writeInt(r.to);
+		} else if (m instanceof InstanceFrontierMessage) {
+			// a frontier has the shape of a dependency array
+			writeDeps(out, ((InstanceFrontierMessage) m).executed);
+		} else if (m instanceof SnapshotRequestMessage) {
+			out.writeInt(((SnapshotRequestMessage) m).slot);
+		} else if (m instanceof SnapshotMessage) {
+			SnapshotMessage s = (SnapshotMessage) m;
+			out.writeInt(s.snapshot == null ? 0 : s.snapshot.slot);
+			out.writeBytes(s.snapshot == null ? null : s.snapshot.state);
+			out.writeInt(s.tailStart);
+			writeBatches(out, s.tail);
+		}
+	}
+
+	private static int type(TimestampedMessage m) {
+		if (m instanceof PrepareMessage) {
+			return PREPARE;
+		}
+		if (m instanceof PrepareAckMessage) {
+			return PREPARE_ACK;
+		}
+		if (m instanceof AcceptMessage) {
+			return ACCEPT;
+		}
+		if (m instanceof AcceptAckMessage) {
+			return ACCEPT_ACK;
+		}
+		if (m instanceof HeartbeatMessage) {
+			return HEARTBEAT;
+		}
+		if (m instanceof NackMessage) {
+			return NACK;
+		}
+		if (m instanceof LearnRequestMessage) {
+			return LEARN_REQUEST;
+		}
+		if (m instanceof LearnRangeMessage) {
+			return LEARN_RANGE;
+		}
+		if (m instanceof CommitMessage) {
+			return COMMIT;
+		}
+		if (m instanceof LeaseGrantMessage) {
+			return LEASE_GRANT;
+		}
+		if (m instanceof ClientRequestMessage) {
+			return CLIENT_REQUEST;
+		}
+		if (m instanceof ClientReplyMessage) {
+			return CLIENT_REPLY;
+		}
+		if (m instanceof PreAcceptMessage) {
+			return PRE_ACCEPT;
+		}
+		if (m instanceof PreAcceptAckMessage) {
+			return PRE_ACCEPT_ACK;
+		}
+		if (m instanceof InstanceAcceptMessage) {
+			return INSTANCE_ACCEPT;
+		}
+		if (m instanceof InstanceAcceptAckMessage) {
+			return INSTANCE_ACCEPT_ACK;
+		}
+		if (m instanceof InstanceCommitMessage) {
+			return INSTANCE_COMMIT;
+		}
+		if (m instanceof InstanceRequestMessage) {
+			return INSTANCE_REQUEST;
+		}
+		if (m instanceof InstanceFrontierMessage) {
+			return INSTANCE_FRONTIER;
+		}
+		if (m instanceof SnapshotRequestMessage) {
+			return SNAPSHOT_REQUEST;
+		}
+		if (m instanceof SnapshotMessage) {
+			return SNAPSHOT;
+		}
+		throw new IllegalArgumentException("No encoding for " + m.getClass().getSimpleName());
+	}
+
+	private static void writeBatch(Encoder out, Batch b) {
+		if (b == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(b.size());
+		for (int i = 0; i < b.size(); i++) {
+			out.writeString(b.get(i));
+		}
+	}
+
+	private static Batch readBatch(Decoder in) {
+		int n = in.readInt();
+		if (n < 0) {
+			return null;
+		}
+		String[] commands = new String[n];
+		for (int i = 0; i < n; i++) {
+			commands[i] = in.readString();
+		}
+		return n == 0 ? Batch.NOOP : new Batch(commands);
+	}
+
+	private static void writeBatches(Encoder out, Batch[] batches) {
+		out.writeInt(batches.length);
+		for (Batch b : batches) {
+			writeBatch(out, b);
+		}
+	}
+
+	private static Batch[] readBatches(Decoder in) {
+		Batch[] batches = new Batch[in.readInt()];
+		for (int i = 0; i < batches.length; i++) {
+			batches[i] = readBatch(in);
+		}
+		return batches;
+	}
+
+	/**
+	 * Dependencies are written sparsely, as the number of replicas with a
+	 * dependency followed by replica ID and instance pairs.
+	 */
+	private static void writeDeps(Encoder out, int[] deps) {
+		int n = 0;
+		for (int d : deps) {
+			if (d >= 0) {
+				n++;
+			}
+		}
+		out.writeInt(n);
+		for (int r = 0; r < deps.length; r++) {
+			if (deps[r] >= 0) {
+				out.writeInt(r).writeInt(deps[r]);
+			}
+		}
+	}
+
+	private static int[] readDeps(Decoder in) {
+		int n = in.readInt();
+		int[] replicas = new int[n];
+		int[] numbers = new int[n];
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			replicas[i] = in.readInt();
+			numbers[i] = in.readInt();
+			length = Math.max(length, replicas[i] + 1);
+		}
+		int[] deps = new int[length];
+		Arrays.fill(deps, -1);
+		for (int i = 0; i < n; i++) {
+			deps[replicas[i]] = numbers[i];
+		}
+		return deps;
+	}
+
+	private static Node node(int id) {
+		return id == 0 ? null : Tools.getNodeByID(id);
+	}
+}
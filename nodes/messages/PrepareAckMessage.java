@@ -36,23 +36,31 @@
 */
 package projects.paxos.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
+import projects.paxos.protocol.Batch;
+import sinalgo.nodes.Node;
 
 
+/**
+ * Phase 1 promise. Reports every value the acceptor has accepted in the
+ * slots covered by the prepare, so the proposer can re-propose them. Slots
+ * below <code>snapshotSlot</code> were decided and compacted by the acceptor
+ * and must not be proposed again.
+ */
 public class PrepareAckMessage extends TimestampedMessage {
-	public int number = 0;
-	public String value;
+	public final int number;
+	public final int slot;
+	public final int snapshotSlot;
+	public final int[] acceptedSlots;
+	public final int[] acceptedNumbers;
+	public final Batch[] acceptedValues;
 	
-	public PrepareAckMessage(int n, String v) {
+	public PrepareAckMessage(Node origin, Node destination, int ts, int n, int s, int first, int[] slots, int[] numbers, Batch[] values) {
+		super(origin, destination, ts);
 		number = n;
-		value = v;
-	}
-	
-	public Message clone() {
-		PrepareAckMessage m = new PrepareAckMessage(this.number, this.value);
-		m.finalDestination = this.finalDestination;
-		m.originalSender = this.originalSender;
-		m.timestamp = this.timestamp;
-		return m;
+		slot = s;
+		snapshotSlot = first;
+		acceptedSlots = slots;
+		acceptedNumbers = numbers;
+		acceptedValues = values;
 	}
 }
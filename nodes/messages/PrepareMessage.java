@@ -36,23 +36,19 @@
 */
 package projects.paxos.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
+import sinalgo.nodes.Node;
 
 
+/**
+ * Phase 1 request. A single prepare covers all slots from <code>slot</code> on.
+ */
 public class PrepareMessage extends TimestampedMessage {
-	public int number = 0;
-	public String value;
+	public final int number;
+	public final int slot;
 	
-	public PrepareMessage(int n, String v){
+	public PrepareMessage(Node origin, Node destination, int ts, int n, int s) {
+		super(origin, destination, ts);
 		number = n;
-		value = v;
-	}
-	
-	public Message clone(){
-		PrepareMessage m = new PrepareMessage(this.number, this.value);
-		m.finalDestination = this.finalDestination;
-		m.originalSender = this.originalSender;
-		m.timestamp = this.timestamp;
-		return m;
+		slot = s;
 	}
 }
@@ -40,8 +40,40 @@ import sinalgo.nodes.Node;
 import sinalgo.nodes.messages.Message;
 
 
+/**
+ * A message that is stamped by its origin, so that relays can recognize
+ * duplicates. <code>finalDestination</code> is <code>null</code> for
+ * messages addressed to all nodes.
+ * <p>
+ * Messages and everything they reference, including arrays, are never
+ * modified after construction. The simulator and the relays can therefore
+ * hand the same instance to every neighbor instead of copying it per hop.
+ */
 public abstract class TimestampedMessage extends Message {
-	public Node finalDestination = null;
-	public Node originalSender;
-	public int timestamp = 0;
+	public final Node originalSender;
+	public final Node finalDestination;
+	public final int timestamp;
+	// length of the binary encoding, computed on first use
+	private int byteSize = -1;
+	
+	protected TimestampedMessage(Node origin, Node destination, int ts) {
+		originalSender = origin;
+		finalDestination = destination;
+		timestamp = ts;
+	}
+	
+	public final Message clone() {
+		return this;
+	}
+	
+	/**
+	 * @return The number of bytes this message takes on the wire, see
+	 * {@link MessageCodec}.
+	 */
+	public int byteSize() {
+		if (byteSize < 0) {
+			byteSize = MessageCodec.size(this);
+		}
+		return byteSize;
+	}
 }
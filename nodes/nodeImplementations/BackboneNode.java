@@ -39,47 +39,196 @@ package projects.paxos.nodes.nodeImplementations;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
+import projects.paxos.Metrics;
+import projects.paxos.PaxosConfig;
+import projects.paxos.models.messageTransmissionModels.BandwidthTime;
 import projects.paxos.nodes.messages.TimestampedMessage;
+import projects.paxos.nodes.messages.TreeBeaconMessage;
+import projects.paxos.nodes.timers.BeaconTimer;
+import projects.paxos.protocol.ReplayWindow;
+import projects.paxos.protocol.RoutingTable;
+import projects.paxos.protocol.SpanningTree;
 import sinalgo.configuration.WrongConfigurationException;
 import sinalgo.gui.transformation.PositionTransformation;
 import sinalgo.nodes.Node;
 import sinalgo.nodes.edges.Edge;
 import sinalgo.nodes.messages.Inbox;
 import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
 
 /**
- * The absolute dummy node. Does not do anything. Good for testing network topologies.
+ * Relay node. Floods every fresh message to all neighbors; duplicates are
+ * recognized by a sliding window over the timestamps of each origin. With
+ * <code>unicastRouting</code>, addressed messages are forwarded along a
+ * single path learnt from earlier floods instead.
+ * <p>
+ * With <code>dissemination="tree"</code>, the BackboneNodes maintain a
+ * broadcast spanning tree and forward a message only along tree edges and
+ * to the PaxosNodes and ClientNodes they serve, which takes about one
+ * transmission per node instead of one per edge. Each of those is served by
+ * the BackboneNode with the lowest ID among its neighbors. For two beacon
+ * intervals after its parent changed, a node gossips instead: it floods a
+ * message with probability <code>gossipProbability</code>.
  */
 public class BackboneNode extends Node {
-	HashMap<Node, Integer> vectorTS = new HashMap<Node, Integer>();
+	ReplayWindow vectorTS = new ReplayWindow(PaxosConfig.dedupWindow);
+	int droppedDuplicates = 0;
+	int droppedTooOld = 0;
+	RoutingTable routes = new RoutingTable();
+	SpanningTree tree = new SpanningTree();
+	List<Node> served = new ArrayList<Node>();
+	double repairingUntil = 0;
 	
 	@Override
 	public void handleMessages(Inbox inbox) {
+		Metrics.inbox(this.ID, inbox.size());
 		while(inbox.hasNext()) {
 			Message msg = inbox.next();
 			if (msg instanceof TimestampedMessage) {
-				TimestampedMessage tmsg = (TimestampedMessage) msg;
-				Node sender = tmsg.originalSender;
-				int maxTimestamp = vectorTS.containsKey(sender) ? vectorTS.get(sender) : -1;
-				if (tmsg.timestamp > maxTimestamp) {
-					vectorTS.put(sender, tmsg.timestamp);
-					broadcast(tmsg);
+				relay((TimestampedMessage) msg, inbox.getSender());
+			} else if (msg instanceof TreeBeaconMessage) {
+				TreeBeaconMessage bmsg = (TreeBeaconMessage) msg;
+				tree.heard(inbox.getSender(), bmsg.root, bmsg.seq, bmsg.distance, bmsg.parent, Global.currentTime);
+			}
+		}
+	}
+
+	/**
+	 * Forwards a message that arrived from the neighbor <code>from</code>,
+	 * unless it was seen before.
+	 */
+	public void relay(TimestampedMessage tmsg, Node from) {
+		Node sender = tmsg.originalSender;
+		int seen = vectorTS.check(sender.ID, tmsg.timestamp);
+		if (seen == ReplayWindow.DUPLICATE) {
+			droppedDuplicates++;
+			Metrics.count(Metrics.DROPPED, tmsg);
+		} else if (seen == ReplayWindow.TOO_OLD) {
+			droppedTooOld++;
+			Metrics.count(Metrics.DROPPED, tmsg);
+		} else {
+			Metrics.count(Metrics.FORWARDED, tmsg);
+			if (PaxosConfig.unicastRouting) {
+				routes.learn(sender, from);
+				Node hop = tmsg.finalDestination == null ? null : routes.nextHop(this, tmsg.finalDestination);
+				if (hop != null) {
+					transmit(tmsg, hop);
+					return;
 				}
 			}
+			if (!PaxosConfig.dissemination.equals("tree")) {
+				transmit(tmsg, null);
+			} else if (Global.currentTime < repairingUntil 
+					&& Tools.getRandomNumberGenerator().nextDouble() < PaxosConfig.gossipProbability) {
+				transmit(tmsg, null);
+			} else {
+				for (Node n : tree.neighbors()) {
+					if (n != from) {
+						transmit(tmsg, n);
+					}
+				}
+				for (Node n : served) {
+					if (n != from && n != sender) {
+						transmit(tmsg, n);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called every <code>treeBeaconInterval</code> rounds: updates the tree
+	 * and tells the neighbors about it.
+	 */
+	public void beacon() {
+		updateTree();
+		sendBeacon();
+		new BeaconTimer().startRelative(PaxosConfig.treeBeaconInterval, this);
+	}
+
+	private void sendBeacon() {
+		TreeBeaconMessage beacon = new TreeBeaconMessage(tree.root(), tree.seq(), tree.distance(), 
+				tree.parent() == null ? 0 : tree.parent().ID);
+		Metrics.count(Metrics.SENT, beacon);
+		BandwidthTime.broadcast(this, beacon);
+	}
+
+	/**
+	 * Recomputes the tree from the latest beacons and the PaxosNodes and
+	 * ClientNodes served by this node. A new parent is announced right away, so that it learns
+	 * about its new child without waiting for the next beacon.
+	 */
+	private void updateTree() {
+		Node oldParent = tree.parent();
+		int oldRoot = tree.root();
+		tree.update(this, Global.currentTime, 3 * PaxosConfig.treeBeaconInterval);
+		served.clear();
+		for (Edge e : outgoingConnections) {
+			if ((e.endNode instanceof PaxosNode || e.endNode instanceof ClientNode) && servedBy(e.endNode) == this) {
+				served.add(e.endNode);
+			}
+		}
+		if (tree.parent() != oldParent || tree.root() != oldRoot) {
+			repairingUntil = Global.currentTime + 2 * PaxosConfig.treeBeaconInterval;
+			sendBeacon();
 		}
 	}
 
+	/**
+	 * @return The BackboneNode with the lowest ID among the neighbors of
+	 * <code>n</code>.
+	 */
+	private static Node servedBy(Node n) {
+		Node best = null;
+		for (Edge e : n.outgoingConnections) {
+			if (e.endNode instanceof BackboneNode && (best == null || e.endNode.ID < best.ID)) {
+				best = e.endNode;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Sends <code>msg</code> to the neighbor <code>hop</code>, or to all
+	 * neighbors if <code>hop</code> is <code>null</code>.
+	 */
+	protected void transmit(Message msg, Node hop) {
+		if (hop != null) {
+			send(msg, hop);
+		} else {
+			BandwidthTime.broadcast(this, msg);
+		}
+	}
+
+	public int getDroppedDuplicates() {
+		return droppedDuplicates;
+	}
+
+	public int getDroppedTooOld() {
+		return droppedTooOld;
+	}
+
 	@Override
 	public void preStep() {}
 
 	@Override
-	public void init() {}
+	public void init() {
+		if (PaxosConfig.dissemination.equals("tree")) {
+			new BeaconTimer().startRelative(1 + Tools.getRandomNumberGenerator().nextInt(PaxosConfig.treeBeaconInterval), this);
+		}
+	}
 
 	@Override
-	public void neighborhoodChange() {}
+	public void neighborhoodChange() {
+		if (PaxosConfig.dissemination.equals("tree")) {
+			updateTree();
+		}
+	}
 
 	@Override
 	public void postStep() {}
@@ -0,0 +1,259 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.nodes.nodeImplementations;
+
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import projects.paxos.Cluster;
+import projects.paxos.Metrics;
+import projects.paxos.PaxosConfig;
+import projects.paxos.models.messageTransmissionModels.BandwidthTime;
+import projects.paxos.nodes.messages.ClientReplyMessage;
+import projects.paxos.nodes.messages.ClientRequestMessage;
+import projects.paxos.nodes.messages.TimestampedMessage;
+import projects.paxos.protocol.KeyValueStore;
+import projects.paxos.protocol.RoutingTable;
+import sinalgo.configuration.WrongConfigurationException;
+import sinalgo.gui.transformation.PositionTransformation;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Inbox;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
+
+/**
+ * Workload generator. Writes random keys through the leader of the group
+ * that owns the key, or reads them with probability
+ * <code>clientReads</code>, sending through the backbone like any other
+ * addressed message, and records the rounds until the reply in
+ * <code>Metrics.clientLatency</code>.
+ * <p>
+ * With <code>clientLoad="closed"</code>, a new command is issued as soon as
+ * fewer than <code>clientOutstanding</code> are waiting for their reply.
+ * With <code>clientLoad="poisson"</code>, commands arrive as a Poisson
+ * process with <code>clientRate</code> commands per round, whether or not
+ * earlier ones were answered. A command without reply is sent again after
+ * <code>clientTimeout</code> rounds, to a random PaxosNode of the group if
+ * the leader did not answer; replies from non-leaders name the leader to
+ * try next. A redirected command is sent on in a later round, after a delay
+ * that doubles with every redirect, so that nodes naming each other during
+ * an election do not bounce it every round.
+ * Requires <code>multiPaxos</code>.
+ */
+public class ClientNode extends Node {
+	// outstanding commands by the round they were issued and last sent in,
+	// the number of redirects followed, the round a redirect is followed
+	// in (-1 for none) and the ID of the node the command was last sent to
+	Map<String, double[]> outstanding = new LinkedHashMap<String, double[]>();
+	// the known leader of each group
+	Node[] leaders = new Node[PaxosConfig.groups];
+	int issued = 0;
+	int completed = 0;
+	int retries = 0;
+
+	// logic clock
+	int timestamp = 0;
+
+	RoutingTable routes = new RoutingTable();
+
+	@Override
+	public void handleMessages(Inbox inbox) {
+		Metrics.inbox(this.ID, inbox.size());
+		while (inbox.hasNext()) {
+			Message msg = inbox.next();
+			Node hop = inbox.getSender();
+			if (!(msg instanceof ClientReplyMessage)) {
+				continue;
+			}
+			ClientReplyMessage rmsg = (ClientReplyMessage) msg;
+			if (PaxosConfig.unicastRouting) {
+				routes.learn(rmsg.originalSender, hop);
+			}
+			if (rmsg.finalDestination != this) {
+				continue;
+			}
+			double[] times = outstanding.get(rmsg.command);
+			if (rmsg.slot >= 0) {
+				leaders[groupOf(rmsg.command)] = rmsg.originalSender;
+				if (times != null) {
+					outstanding.remove(rmsg.command);
+					Metrics.clientLatency.record(Global.currentTime - times[0]);
+					completed++;
+				}
+			} else if (times != null && rmsg.leader != 0 && rmsg.leader != (int) times[4] && times[3] < 0) {
+				leaders[groupOf(rmsg.command)] = Tools.getNodeByID(rmsg.leader);
+				times[3] = Global.currentTime + Math.min(PaxosConfig.clientTimeout, Math.pow(2, times[2]++));
+			}
+		}
+	}
+
+	@Override
+	public void preStep() {
+		if (PaxosConfig.clientLoad.equals("poisson")) {
+			for (int i = poisson(PaxosConfig.clientRate); i > 0; i--) {
+				issue();
+			}
+		} else {
+			while (outstanding.size() < PaxosConfig.clientOutstanding) {
+				issue();
+			}
+		}
+		for (Map.Entry<String, double[]> e : outstanding.entrySet()) {
+			double[] times = e.getValue();
+			if (times[3] >= 0 && Global.currentTime >= times[3]) {
+				submit(e.getKey(), times);
+			} else if (Global.currentTime - times[1] >= PaxosConfig.clientTimeout) {
+				// the leader did not answer in time; it may have failed
+				leaders[groupOf(e.getKey())] = null;
+				retries++;
+				submit(e.getKey(), times);
+			}
+		}
+	}
+
+	private void issue() {
+		String key = Cluster.randomKey();
+		String command = KeyValueStore.get(key);
+		// a read of a key that is already being read is issued as a write,
+		// as outstanding commands must be distinct
+		if (Tools.getRandomNumberGenerator().nextDouble() >= PaxosConfig.clientReads || outstanding.containsKey(command)) {
+			command = KeyValueStore.put(key, "C" + this.ID + "." + issued);
+		}
+		issued++;
+		double[] times = {Global.currentTime, Global.currentTime, 0, -1, 0};
+		outstanding.put(command, times);
+		submit(command, times);
+	}
+
+	/**
+	 * Sends <code>command</code> to the leader of the group owning its key,
+	 * or to a random PaxosNode of the group if the leader is not known.
+	 */
+	private void submit(String command, double[] times) {
+		int group = groupOf(command);
+		Node target = leaders[group];
+		times[3] = -1;
+		if (target == null) {
+			List<PaxosNode> members = Cluster.members(group);
+			if (members.isEmpty()) {
+				return;
+			}
+			target = members.get(Tools.getRandomNumberGenerator().nextInt(members.size()));
+		}
+		times[1] = Global.currentTime;
+		times[4] = target.ID;
+		sendTS(new ClientRequestMessage(this, target, timestamp++, command));
+	}
+
+	private static int groupOf(String command) {
+		return Cluster.groupOf(KeyValueStore.keyOf(command));
+	}
+
+	/**
+	 * @return A sample of a Poisson distribution with the given mean, by
+	 * Knuth's multiplication method.
+	 */
+	private static int poisson(double mean) {
+		Random random = Tools.getRandomNumberGenerator();
+		double limit = Math.exp(-mean);
+		double product = random.nextDouble();
+		int n = 0;
+		while (product > limit) {
+			product *= random.nextDouble();
+			n++;
+		}
+		return n;
+	}
+
+	private void sendTS(TimestampedMessage ts) {
+		Metrics.count(Metrics.SENT, ts);
+		Node hop = PaxosConfig.unicastRouting ? routes.nextHop(this, ts.finalDestination) : null;
+		if (hop != null) {
+			send(ts, hop);
+		} else {
+			BandwidthTime.broadcast(this, ts);
+		}
+	}
+
+	public int getIssued() {
+		return issued;
+	}
+
+	public int getCompleted() {
+		return completed;
+	}
+
+	public int getRetries() {
+		return retries;
+	}
+
+	@Override
+	public void init() {}
+
+	@Override
+	public void neighborhoodChange() {}
+
+	@Override
+	public void postStep() {}
+
+	@Override
+	public String toString() {
+		String s = "Node(" + this.ID + ") [";
+		Iterator<String> commands = outstanding.keySet().iterator();
+		while (commands.hasNext()) {
+			s += commands.next() + " ";
+		}
+		return s + "]";
+	}
+
+	@Override
+	public void draw(Graphics g, PositionTransformation pt, boolean highlight) {
+		setColor(Color.MAGENTA);
+		super.drawNodeAsSquareWithText(g, pt, highlight, String.valueOf(outstanding.size()), 25, Color.WHITE);
+	}
+
+	@Override
+	public void checkRequirements() throws WrongConfigurationException {}
+
+}
@@ -39,180 +39,1516 @@ package projects.paxos.nodes.nodeImplementations;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.Set;
-import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import sinalgo.configuration.WrongConfigurationException;
 import sinalgo.gui.transformation.PositionTransformation;
 import sinalgo.nodes.Node;
 import sinalgo.nodes.messages.Inbox;
 import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+import sinalgo.runtime.Main;
+import sinalgo.tools.Tools;
+import sinalgo.tools.logging.Logging;
+import projects.paxos.Cluster;
+import projects.paxos.Metrics;
+import projects.paxos.PaxosConfig;
+import projects.paxos.models.messageTransmissionModels.BandwidthTime;
 import projects.paxos.nodes.messages.AcceptMessage;
 import projects.paxos.nodes.messages.AcceptAckMessage;
-import projects.paxos.nodes.messages.LearnMessage;
+import projects.paxos.nodes.messages.ClientReplyMessage;
+import projects.paxos.nodes.messages.ClientRequestMessage;
+import projects.paxos.nodes.messages.CommitMessage;
+import projects.paxos.nodes.messages.HeartbeatMessage;
+import projects.paxos.nodes.messages.InstanceAcceptAckMessage;
+import projects.paxos.nodes.messages.InstanceAcceptMessage;
+import projects.paxos.nodes.messages.InstanceCommitMessage;
+import projects.paxos.nodes.messages.InstanceFrontierMessage;
+import projects.paxos.nodes.messages.InstanceRequestMessage;
+import projects.paxos.nodes.messages.LearnRangeMessage;
+import projects.paxos.nodes.messages.LearnRequestMessage;
+import projects.paxos.nodes.messages.LeaseGrantMessage;
+import projects.paxos.nodes.messages.NackMessage;
 import projects.paxos.nodes.messages.PrepareMessage;
 import projects.paxos.nodes.messages.PrepareAckMessage;
+import projects.paxos.nodes.messages.PreAcceptAckMessage;
+import projects.paxos.nodes.messages.PreAcceptMessage;
+import projects.paxos.nodes.messages.SnapshotMessage;
+import projects.paxos.nodes.messages.SnapshotRequestMessage;
 import projects.paxos.nodes.messages.TimestampedMessage;
+import projects.paxos.nodes.timers.HeartbeatTimer;
+import projects.paxos.nodes.timers.RetransmitTimer;
+import projects.paxos.protocol.AcceptorStorage;
+import projects.paxos.protocol.Batch;
+import projects.paxos.protocol.Instance;
+import projects.paxos.protocol.InstanceSpace;
+import projects.paxos.protocol.KeyValueStore;
+import projects.paxos.protocol.Lease;
+import projects.paxos.protocol.MemoryStorage;
+import projects.paxos.protocol.QuorumTracker;
+import projects.paxos.protocol.ReplicatedLog;
+import projects.paxos.protocol.RoutingTable;
+import projects.paxos.protocol.Slot;
+import projects.paxos.protocol.Snapshot;
+import projects.paxos.protocol.WriteAheadLog;
 
 /**
- * The absolute dummy node. Does not do anything. Good for testing network topologies.
+ * A Paxos node: every node is acceptor and learner, the distinguished node
+ * is also the proposer. Decisions are kept in a slot-indexed log. Phase 1 is
+ * run once for all slots; afterwards the distinguished node only sends
+ * phase 2 messages. Without <code>multiPaxos</code> only slot 0 is ever
+ * proposed, which is the classic single-decree protocol. The decided
+ * commands are applied to a key-value store.
+ * <p>
+ * With <code>groups</code> > 1 the nodes form that many independent Paxos
+ * groups, each owning a part of the keyspace, and ignore the messages of the
+ * other groups. Nodes 1 to <code>groups</code> start as distinguished nodes
+ * of their groups. The leader sends heartbeats; when a node has not heard
+ * from it for <code>leaderTimeout</code> rounds, it runs phase 1 itself
+ * after waiting in proportion to its rank among the node IDs of its group.
+ * Proposal numbers embed the node ID, so they are unique, and a proposer
+ * that is preempted backs off for a random, growing number of rounds.
+ * <p>
+ * With <code>leaderless</code> there is no distinguished node: every node
+ * proposes its share of the commands in instances of its own, EPaxos style.
+ * An instance carries the instances it interferes with, i.e. those touching
+ * the same key, and commits after one round trip if a fast quorum agrees on
+ * them; otherwise it goes through an accept round first. Committed instances
+ * are executed in dependency order. Every <code>heartbeatInterval</code>
+ * rounds the nodes report how far they executed; a node that missed commits,
+ * e.g. while crashed, fetches them from a peer.
  */
 public class PaxosNode extends Node {
+	/** Proposal numbers are <code>round * BALLOT_STRIDE + ID</code>. */
+	static final int BALLOT_STRIDE = 1 << 16;
+	/** Most instances asked for in one InstanceRequestMessage. */
+	static final int MAX_INSTANCE_REQUEST = 16;
+
+	// Paxos group; messages from PaxosNodes of other groups are ignored
+	int group = 0;
+
 	// proposer variables
 	boolean distinguished = false;
+	boolean phase1Started = false;
+	double phase1StartedAt = 0;
 	int currentProposalNumber = 0;
-	String currentProposalValue;
-	Set<Integer> proposalsAccepted = new HashSet<Integer>();
-	Set<Integer> accepts = new HashSet<Integer>();
-	int N_NODES = 64;
+	QuorumTracker proposalsAccepted = new QuorumTracker();
+	ArrayDeque<QuorumTracker> freeTrackers = new ArrayDeque<QuorumTracker>();
+	int nextSlot = 0;
+	int snapshotFloor = 0;
+	int announcedCommit = 0;
+	// commit index of the current ballot: every slot below it is learned, and
+	// every slot proposed in this ballot was decided by its own phase 2 quorum
+	int ballotCommit = 0;
+	Lease lease = new Lease(PaxosConfig.leaseDuration, PaxosConfig.clockDrift);
+	int readFloor = 0;
+	double commitLatencySum = 0;
+	int commitLatencyCount = 0;
+
+	// client commands waiting to be batched by the proposer
+	ArrayDeque<String> pendingCommands = new ArrayDeque<String>();
+	ArrayDeque<Double> pendingSince = new ArrayDeque<Double>();
+	int generatedCommands = 0;
+	double loadCredit = 0;
+	// ClientNodes waiting for the decision of their commands
+	Map<String, Node> clients = new HashMap<String, Node>();
+	// reads waiting to be answered locally under the lease, and who asked;
+	// the node itself for the generated ones
+	ArrayDeque<String> pendingReads = new ArrayDeque<String>();
+	ArrayDeque<Node> readers = new ArrayDeque<Node>();
+	long localReads = 0;
+	long loggedReads = 0;
 
-	// acceptor variables
+	// acceptor variables; acks wait in pendingAcks until the state they
+	// report is durable in storage
 	int highestAcceptedProposalNumber = 0;
-	String acceptedProposalValue;
+	AcceptorStorage storage = new MemoryStorage();
+	ArrayList<TimestampedMessage> pendingAcks = new ArrayList<TimestampedMessage>();
 	boolean prepared = false;
 	boolean accepted = false;
+	Node leaseHolder = null;
+	double leaseUntil = -1;
 
 	// learner variables
 	boolean learned = false;
-	String learnedValue = null;
+	int decidedSlots = 0;
+	int lastLearnedSlot = -1;
+
+	// replicated log; all slots below firstUnlearned are learned and
+	// have been applied to the state machine in slot order. The prefix
+	// covered by the snapshot has been dropped from the log.
+	ReplicatedLog log = new ReplicatedLog();
+	int firstUnlearned = 0;
+	KeyValueStore stateMachine = new KeyValueStore();
+	Snapshot snapshot = new Snapshot(0, stateMachine.snapshot());
+	int deliveredCommands = 0;
+
+	// catch-up of a lagging learner, through learn ranges for small gaps
+	// and through a snapshot for gaps of at least snapshotInterval slots
+	double catchUpRequestedAt = -1;
+	double catchUpStartedAt = -1;
+	int catchUpTarget = 0;
+	int catchUpGap = 0;
+	int catchUps = 0;
+	double catchUpRoundsSum = 0;
+	long catchUpSlotsSum = 0;
+
+	// leader election
+	boolean crashed = false;
+	Node leader = null;
+	double lastHeartbeat = 0;
+	double suspectedSince = -1;
+	double notCandidateBefore = 0;
+	double candidacyBackoff = 0;
+	double electionStartedAt = -1;
+	double ballotStartedAt = 0;
+	int leadershipRecoveries = 0;
+	double recoveryRoundsSum = 0;
+	int ballotConflicts = 0;
+	double wastedRounds = 0;
+
+	// leaderless mode: the instances of all replicas of the group, and the
+	// instances this node leads that are not committed yet
+	InstanceSpace instances = new InstanceSpace();
+	int nextInstance = 0;
+	int openInstances = 0;
+	int fastCommits = 0;
+	int slowCommits = 0;
+	// catch-up of missed commits: the executed prefixes other replicas
+	// reported, when this node last asked a peer for commits, and whether
+	// a timer watches the instance the executor waits for
+	Map<Integer, int[]> frontiers = new HashMap<Integer, int[]>();
+	double instancesRequestedAt = -1;
+	boolean waitTimerRunning = false;
+	final InstanceSpace.Executor executor = new InstanceSpace.Executor() {
+		public void execute(Instance instance) {
+			decidedSlots++;
+			learned = true;
+			deliver(instance.number, instance.value);
+		}
+	};
 
 	// logic clock
 	int timestamp = 0;
 
+	// next hops toward other Paxos nodes, used with unicastRouting
+	RoutingTable routes = new RoutingTable();
+
 	@Override
 	public void handleMessages(Inbox inbox) {
+		Metrics.inbox(this.ID, inbox.size());
+		if (crashed) {
+			while (inbox.hasNext()) {
+				Metrics.count(Metrics.DROPPED, inbox.next());
+			}
+			return;
+		}
 		while(inbox.hasNext()) {
-			Message msg = inbox.next();
-			Node sender = inbox.getSender();
-			if (msg instanceof TimestampedMessage) {
-				TimestampedMessage tmsg = (TimestampedMessage) msg;
-				if (tmsg.finalDestination != null && tmsg.finalDestination != this) {
-					continue;
-				}
-				sender = tmsg.originalSender;
-			}
-			// Acceptor
-			if (msg instanceof PrepareMessage) {
-				PrepareMessage pmsg = (PrepareMessage) msg;
-				if (pmsg.number > highestAcceptedProposalNumber) {
-					highestAcceptedProposalNumber = pmsg.number;
-					acceptedProposalValue = pmsg.value;
-					PrepareAckMessage ack = new PrepareAckMessage(
-							highestAcceptedProposalNumber, 
-							acceptedProposalValue);
-					sendTS(ack, sender);
-					prepared = true;
-				}
-			}
-			if (msg instanceof AcceptMessage) {
-				AcceptMessage amsg = (AcceptMessage) msg;
-				if (amsg.number >= highestAcceptedProposalNumber) {
-					highestAcceptedProposalNumber = amsg.number;
-					acceptedProposalValue = amsg.value;
-					AcceptAckMessage ack = new AcceptAckMessage(
-							highestAcceptedProposalNumber, 
-							acceptedProposalValue);
-					sendTS(ack, sender);
-					accepted = true;
-				}
-			}
-			// Proposer
-			if (msg instanceof PrepareAckMessage) {
-				PrepareAckMessage amsg = (PrepareAckMessage) msg;
-				if (amsg.number >= currentProposalNumber) {
-					currentProposalNumber = amsg.number;
-					currentProposalValue = amsg.value;
-					proposalsAccepted.add(sender.ID);
-				}
-			}
-			// Learner
-			if (msg instanceof AcceptAckMessage) {
-				AcceptAckMessage amsg = (AcceptAckMessage) msg;
-				if (amsg.number >= currentProposalNumber) {
-					currentProposalNumber = amsg.number;
-					currentProposalValue = amsg.value;
+			handle(inbox.next(), inbox.getSender());
+		}
+		sendPendingAcks();
+	}
+
+	/**
+	 * Handles one received message; <code>hop</code> is the neighbor it
+	 * arrived from. Acks that need stable storage are held back until
+	 * {@link #sendPendingAcks()}.
+	 */
+	public void handle(Message msg, Node hop) {
+		Node sender = hop;
+		if (msg instanceof TimestampedMessage) {
+			TimestampedMessage tmsg = (TimestampedMessage) msg;
+			if (PaxosConfig.unicastRouting) {
+				routes.learn(tmsg.originalSender, sender);
+			}
+			if (tmsg.finalDestination != null && tmsg.finalDestination != this) {
+				return;
+			}
+			sender = tmsg.originalSender;
+		}
+		if (sender instanceof PaxosNode && Cluster.groupOf(sender) != group) {
+			return;
+		}
+		// Acceptor
+		if (msg instanceof PrepareMessage && !leasedToOther(sender)) {
+			PrepareMessage pmsg = (PrepareMessage) msg;
+			if (pmsg.number >= highestAcceptedProposalNumber) {
+				highestAcceptedProposalNumber = pmsg.number;
+				leaderSeen(sender, pmsg.number);
+				try {
+					storage.promise(pmsg.number);
+				} catch (IOException e) {
+					Main.fatalError("Node " + this.ID + " cannot write its acceptor log: " + e.getMessage());
+				}
+				sendDurable(promise(pmsg.number, pmsg.slot, sender));
+				prepared = true;
+			} else {
+				sendTS(new NackMessage(this, sender, timestamp++, highestAcceptedProposalNumber));
+			}
+		}
+		if (msg instanceof AcceptMessage) {
+			AcceptMessage amsg = (AcceptMessage) msg;
+			if (amsg.slot < log.first()) {
+				// decided and compacted; the proposer learns it from a snapshot
+			} else if (amsg.number >= highestAcceptedProposalNumber) {
+				highestAcceptedProposalNumber = amsg.number;
+				leaderSeen(sender, amsg.number);
+				Slot slot = log.get(amsg.slot);
+				slot.acceptedNumber = amsg.number;
+				slot.acceptedValue = amsg.value;
+				try {
+					storage.accept(amsg.slot, amsg.number, amsg.value);
+				} catch (IOException e) {
+					Main.fatalError("Node " + this.ID + " cannot write its acceptor log: " + e.getMessage());
+				}
+				AcceptAckMessage ack = new AcceptAckMessage(this, sender, timestamp++, 
+						amsg.number, 
+						amsg.slot, 
+						amsg.value);
+				sendDurable(ack);
+				accepted = true;
+				commit(amsg.number, amsg.commit, sender);
+			} else {
+				sendTS(new NackMessage(this, sender, timestamp++, highestAcceptedProposalNumber));
+			}
+		}
+		if (msg instanceof HeartbeatMessage) {
+			HeartbeatMessage hmsg = (HeartbeatMessage) msg;
+			// while the lease of another node runs, only the holder renews it
+			if (hmsg.number >= highestAcceptedProposalNumber && !leasedToOther(sender)) {
+				leaderSeen(sender, hmsg.number);
+				if (PaxosConfig.leaseDuration > 0) {
+					leaseHolder = sender;
+					leaseUntil = lease.promisedUntil(Global.currentTime);
+					sendTS(new LeaseGrantMessage(this, sender, timestamp++, hmsg.number, hmsg.timestamp));
+				}
+			}
+			checkGap(sender, hmsg.slot, 1);
+		}
+		// Proposer
+		if (msg instanceof ClientRequestMessage) {
+			ClientRequestMessage cmsg = (ClientRequestMessage) msg;
+			if (!distinguished && !PaxosConfig.leaderless) {
+				sendTS(new ClientReplyMessage(this, sender, timestamp++, cmsg.command, -1, 
+						leader == null || leader == this ? 0 : leader.ID, null));
+			} else if (distinguished && PaxosConfig.leaseDuration > 0 && cmsg.command.startsWith(KeyValueStore.GET)) {
+				pendingReads.add(cmsg.command);
+				readers.add(sender);
+			} else if (clients.put(cmsg.command, sender) == null) {
+				pendingCommands.add(cmsg.command);
+				pendingSince.add(Global.currentTime);
+			}
+		}
+		if (msg instanceof PrepareAckMessage) {
+			PrepareAckMessage amsg = (PrepareAckMessage) msg;
+			if (amsg.number == currentProposalNumber) {
+				boolean hadMajority = has_majority();
+				if (amsg.snapshotSlot > snapshotFloor) {
+					snapshotFloor = amsg.snapshotSlot;
+				}
+				checkGap(sender, amsg.snapshotSlot - 1, 1);
+				for (int i = 0; i < amsg.acceptedSlots.length; i++) {
+					if (amsg.acceptedSlots[i] < log.first()) {
+						continue;
+					}
+					Slot slot = log.get(amsg.acceptedSlots[i]);
+					if (amsg.acceptedNumbers[i] > slot.adoptedNumber) {
+						slot.adoptedNumber = amsg.acceptedNumbers[i];
+						slot.proposalValue = amsg.acceptedValues[i];
+					}
+				}
+				proposalsAccepted.add(sender.ID);
+				if (!hadMajority && has_majority()) {
+					Metrics.phase1.record(Global.currentTime - phase1StartedAt);
+					leadershipEstablished();
+					reproposeAdopted();
+					readFloor = nextSlot;
+				}
+			}
+		}
+		if (msg instanceof LeaseGrantMessage) {
+			LeaseGrantMessage gmsg = (LeaseGrantMessage) msg;
+			if (distinguished && gmsg.number == currentProposalNumber) {
+				lease.granted(gmsg.request, sender.ID, Cluster.phase2Quorum(group));
+			}
+		}
+		if (msg instanceof NackMessage) {
+			NackMessage nmsg = (NackMessage) msg;
+			if (distinguished && nmsg.number > currentProposalNumber) {
+				stepDown(nmsg.number);
+			}
+		}
+		// Learner
+		if (msg instanceof AcceptAckMessage) {
+			AcceptAckMessage amsg = (AcceptAckMessage) msg;
+			if (amsg.number == currentProposalNumber && amsg.slot >= log.first()) {
+				Slot slot = log.get(amsg.slot);
+				proposalsAccepted.add(sender.ID);
+				if (slot.decidedNumber != currentProposalNumber) {
+					QuorumTracker accepts = acceptsOf(slot);
 					accepts.add(sender.ID);
-					proposalsAccepted.add(sender.ID);
-					if (accepts.size() > N_NODES/2) {
-						learned = true;
-						learnedValue = currentProposalValue;
-					};
+					if (accepts.hasQuorum(Cluster.phase2Quorum(group))) {
+						if (!slot.learned) {
+							commitLatencySum += Global.currentTime - slot.proposedAt;
+							Metrics.phase2.record(Global.currentTime - slot.proposedAt);
+							commitLatencyCount++;
+						}
+						slot.decidedNumber = currentProposalNumber;
+						learn(amsg.slot, amsg.value);
+						advanceBallotCommit();
+					}
 				}
 			}
-			if (msg instanceof LearnMessage) {
-				learned = true;
-				LearnMessage lmsg = (LearnMessage) msg;
-				learnedValue = lmsg.value;
+		}
+		if (msg instanceof CommitMessage) {
+			CommitMessage cmsg = (CommitMessage) msg;
+			if (cmsg.number >= highestAcceptedProposalNumber) {
+				leaderSeen(sender, cmsg.number);
+				commit(cmsg.number, cmsg.commit, sender);
 			}
 		}
+		if (msg instanceof LearnRequestMessage) {
+			LearnRequestMessage rmsg = (LearnRequestMessage) msg;
+			if (rmsg.from < log.first()) {
+				sendTS(snapshotFrom(rmsg.from, sender));
+			} else if (rmsg.from <= lastLearnedSlot) {
+				sendTS(learnRange(rmsg.from, rmsg.to, sender));
+			}
+		}
+		if (msg instanceof LearnRangeMessage) {
+			LearnRangeMessage rmsg = (LearnRangeMessage) msg;
+			int before = firstUnlearned;
+			for (int i = 0; i < rmsg.values.length; i++) {
+				if (rmsg.values[i] != null) {
+					learn(rmsg.from + i, rmsg.values[i]);
+				}
+			}
+			if (firstUnlearned > before) {
+				// ask for the next range right away
+				catchUpRequestedAt = -1;
+				checkGap(sender, catchUpTarget, 1);
+			}
+		}
+		if (msg instanceof SnapshotRequestMessage) {
+			SnapshotRequestMessage rmsg = (SnapshotRequestMessage) msg;
+			if (firstUnlearned > rmsg.slot) {
+				sendTS(snapshotFrom(rmsg.slot, sender));
+			}
+		}
+		if (msg instanceof SnapshotMessage) {
+			install((SnapshotMessage) msg);
+		}
+		// Leaderless mode; the backbone echoes the broadcasts of a command
+		// leader back to it, and the leader must not vote for itself
+		if (sender == this) {
+			return;
+		}
+		if (msg instanceof PreAcceptMessage) {
+			PreAcceptMessage pmsg = (PreAcceptMessage) msg;
+			Instance instance = instances.getOrCreate(sender.ID, pmsg.instance);
+			if (instance.status == Instance.NONE) {
+				instance.value = pmsg.value;
+				instance.seq = pmsg.seq;
+				instance.deps = pmsg.deps;
+				instances.interfere(instance);
+				instance.status = Instance.PRE_ACCEPTED;
+				instances.record(instance);
+			}
+			if (instance.status < Instance.COMMITTED) {
+				sendTS(new PreAcceptAckMessage(this, sender, timestamp++, pmsg.instance, instance.seq, instance.deps));
+			}
+		}
+		if (msg instanceof PreAcceptAckMessage) {
+			PreAcceptAckMessage amsg = (PreAcceptAckMessage) msg;
+			Instance instance = instances.get(this.ID, amsg.instance);
+			if (instance != null && instance.status == Instance.PRE_ACCEPTED && instance.acks.add(sender.ID)) {
+				if (amsg.seq != instance.seq || !InstanceSpace.sameDeps(amsg.deps, instance.deps)) {
+					instance.changed = true;
+					instance.seq = Math.max(instance.seq, amsg.seq);
+					instance.deps = InstanceSpace.merge(instance.deps, amsg.deps);
+				}
+				if (instance.acks.size() >= Cluster.fastQuorum(group) - 1) {
+					if (instance.changed) {
+						acceptInstance(instance);
+					} else {
+						commitInstance(instance, true);
+					}
+				}
+			}
+		}
+		if (msg instanceof InstanceAcceptMessage) {
+			InstanceAcceptMessage amsg = (InstanceAcceptMessage) msg;
+			Instance instance = instances.getOrCreate(sender.ID, amsg.instance);
+			if (instance.status < Instance.COMMITTED) {
+				instance.value = amsg.value;
+				instance.seq = amsg.seq;
+				instance.deps = amsg.deps;
+				instance.status = Instance.ACCEPTED;
+				instances.record(instance);
+				sendTS(new InstanceAcceptAckMessage(this, sender, timestamp++, amsg.instance));
+			}
+		}
+		if (msg instanceof InstanceAcceptAckMessage) {
+			InstanceAcceptAckMessage amsg = (InstanceAcceptAckMessage) msg;
+			Instance instance = instances.get(this.ID, amsg.instance);
+			if (instance != null && instance.status == Instance.ACCEPTED && instance.acks.add(sender.ID) 
+					&& instance.acks.size() >= Cluster.slowQuorum(group) - 1) {
+				commitInstance(instance, false);
+			}
+		}
+		if (msg instanceof InstanceCommitMessage) {
+			InstanceCommitMessage cmsg = (InstanceCommitMessage) msg;
+			Instance instance = instances.getOrCreate(cmsg.replica, cmsg.instance);
+			if (instance.status < Instance.COMMITTED) {
+				instance.value = cmsg.value;
+				instance.seq = cmsg.seq;
+				instance.deps = cmsg.deps;
+				instances.commit(instance);
+				executeInstances();
+			}
+		}
+		if (msg instanceof InstanceRequestMessage) {
+			InstanceRequestMessage rmsg = (InstanceRequestMessage) msg;
+			for (int n = rmsg.from; n <= rmsg.to; n++) {
+				Instance instance = instances.get(rmsg.replica, n);
+				if (instance != null && instance.status >= Instance.COMMITTED) {
+					sendTS(new InstanceCommitMessage(this, sender, timestamp++, rmsg.replica, n, instance.value, 
+							instance.seq, instance.deps));
+				}
+			}
+		}
+		if (msg instanceof InstanceFrontierMessage) {
+			InstanceFrontierMessage fmsg = (InstanceFrontierMessage) msg;
+			frontiers.put(sender.ID, fmsg.executed);
+			// the sender executed instances this node has not seen committed
+			for (int r = 0; r < fmsg.executed.length; r++) {
+				int missing = instances.firstMissing(r, fmsg.executed[r]);
+				if (missing >= 0) {
+					requestInstances(sender, r, missing, Math.min(fmsg.executed[r], missing + MAX_INSTANCE_REQUEST - 1));
+					break;
+				}
+			}
+			pruneInstances();
+		}
+	}
+
+	/**
+	 * Leaderless mode: opens the next instance of this node for
+	 * <code>value</code>, ordered after every interfering instance this node
+	 * knows of.
+	 */
+	private void preAccept(Batch value) {
+		Instance instance = instances.getOrCreate(this.ID, nextInstance++);
+		instance.value = value;
+		instances.interfere(instance);
+		instance.status = Instance.PRE_ACCEPTED;
+		instance.proposedAt = Global.currentTime;
+		instance.acks.reset(instance.number);
+		instances.record(instance);
+		openInstances++;
+		broadcastTS(new PreAcceptMessage(this, null, timestamp++, instance.number, value, instance.seq, instance.deps));
+		startTimer(RetransmitTimer.PRE_ACCEPT, instance.number);
+		if (Cluster.fastQuorum(group) <= 1) {
+			commitInstance(instance, true);
+		}
+	}
+
+	/**
+	 * Leaderless mode, slow path: some replica of the fast quorum added
+	 * dependencies, so the union of the attributes is accepted by a majority
+	 * before the instance is committed.
+	 */
+	private void acceptInstance(Instance instance) {
+		instance.status = Instance.ACCEPTED;
+		instance.acks.reset(instance.number);
+		instances.record(instance);
+		broadcastTS(new InstanceAcceptMessage(this, null, timestamp++, instance.number, instance.value, 
+				instance.seq, instance.deps));
+		startTimer(RetransmitTimer.INSTANCE_ACCEPT, instance.number);
+	}
+
+	private void commitInstance(Instance instance, boolean fast) {
+		if (fast) {
+			fastCommits++;
+		} else {
+			slowCommits++;
+		}
+		openInstances--;
+		commitLatencySum += Global.currentTime - instance.proposedAt;
+		Metrics.phase2.record(Global.currentTime - instance.proposedAt);
+		commitLatencyCount++;
+		instances.commit(instance);
+		broadcastTS(new InstanceCommitMessage(this, null, timestamp++, this.ID, instance.number, instance.value, 
+				instance.seq, instance.deps));
+		executeInstances();
+	}
+
+	/**
+	 * Leaderless mode: executes what can be executed. If an instance of
+	 * another replica holds up execution, a timer is started; should the
+	 * instance still not be committed when it fires, its commit was missed
+	 * and is asked for.
+	 */
+	private void executeInstances() {
+		instances.execute(executor);
+		int replica = instances.waitingReplica();
+		if (replica >= 0 && replica != this.ID && !waitTimerRunning) {
+			waitTimerRunning = true;
+			RetransmitTimer timer = new RetransmitTimer(RetransmitTimer.INSTANCE_REQUEST, replica, instances.waitingNumber(), 
+					PaxosConfig.retransmitTimeout);
+			timer.startRelative(timer.timeout, this);
+		}
+	}
+
+	/**
+	 * Leaderless mode: asks <code>peer</code> for the commits of instances
+	 * <code>from</code> to <code>to</code> of <code>replica</code>, at most
+	 * once per <code>retransmitTimeout</code>.
+	 */
+	private void requestInstances(Node peer, int replica, int from, int to) {
+		if (peer == null || peer == this 
+				|| (instancesRequestedAt >= 0 && Global.currentTime - instancesRequestedAt < PaxosConfig.retransmitTimeout)) {
+			return;
+		}
+		instancesRequestedAt = Global.currentTime;
+		sendTS(new InstanceRequestMessage(this, peer, timestamp++, replica, from, to));
+	}
+
+	/**
+	 * Leaderless mode: drops the instances every replica of the group has
+	 * executed, once all of them reported their executed prefixes.
+	 */
+	private void pruneInstances() {
+		if (frontiers.size() < Cluster.size(group) - 1) {
+			return;
+		}
+		int[] upTo = instances.frontier();
+		for (int[] frontier : frontiers.values()) {
+			for (int r = 0; r < upTo.length; r++) {
+				upTo[r] = Math.min(upTo[r], r < frontier.length ? frontier[r] : -1);
+			}
+		}
+		instances.prune(upTo);
+	}
+
+	/**
+	 * Builds the answer to a snapshot request: the decided values from
+	 * <code>from</code> to the end of the learned prefix, prepended by the
+	 * snapshot if some of these slots have been compacted.
+	 */
+	private SnapshotMessage snapshotFrom(int from, Node destination) {
+		Snapshot s = null;
+		if (from < log.first()) {
+			s = snapshot;
+			from = snapshot.slot;
+		}
+		Batch[] tail = new Batch[firstUnlearned - from];
+		for (int i = 0; i < tail.length; i++) {
+			tail[i] = log.get(from + i).learnedValue;
+		}
+		return new SnapshotMessage(this, destination, timestamp++, s, from, tail);
+	}
+
+	/**
+	 * Builds the answer to a learn request: the values of the slots from
+	 * <code>from</code> on that this node has learned, at most
+	 * <code>catchUpBatch</code> of them and ending with the last one known.
+	 */
+	private LearnRangeMessage learnRange(int from, int to, Node destination) {
+		to = Math.min(Math.min(to, lastLearnedSlot + 1), from + PaxosConfig.catchUpBatch);
+		Batch[] values = new Batch[to - from];
+		for (int i = 0; i < values.length; i++) {
+			Slot slot = log.get(from + i);
+			values[i] = slot.learned ? slot.learnedValue : null;
+		}
+		return new LearnRangeMessage(this, destination, timestamp++, from, values);
+	}
+
+	/**
+	 * Called whenever <code>peer</code> shows that it has learned
+	 * <code>slot</code>. If that is at least <code>minGap</code> slots beyond
+	 * the learned prefix of this node, the missing slots are requested from
+	 * the peer: as a range if the gap is small, as a snapshot otherwise. At
+	 * most one request is outstanding per <code>retransmitTimeout</code>.
+	 */
+	private void checkGap(Node peer, int slot, int minGap) {
+		int gap = slot - firstUnlearned + 1;
+		if (gap < minGap || gap <= 0 || peer == this) {
+			return;
+		}
+		if (catchUpRequestedAt >= 0 && Global.currentTime - catchUpRequestedAt < PaxosConfig.retransmitTimeout) {
+			return;
+		}
+		if (catchUpStartedAt < 0) {
+			catchUpStartedAt = Global.currentTime;
+			catchUpGap = gap;
+		}
+		catchUpTarget = Math.max(catchUpTarget, slot);
+		catchUpRequestedAt = Global.currentTime;
+		if (PaxosConfig.snapshotInterval > 0 && gap >= PaxosConfig.snapshotInterval) {
+			sendTS(new SnapshotRequestMessage(this, peer, timestamp++, firstUnlearned));
+		} else {
+			sendTS(new LearnRequestMessage(this, peer, timestamp++, firstUnlearned, slot + 1));
+		}
+	}
+
+	/**
+	 * Installs a snapshot and the decided tail that follows it.
+	 */
+	private void install(SnapshotMessage smsg) {
+		if (smsg.snapshot != null && smsg.snapshot.slot > firstUnlearned) {
+			snapshot = smsg.snapshot;
+			stateMachine.restore(snapshot.state);
+			log.truncate(snapshot.slot);
+			compactStorage(snapshot.slot);
+			firstUnlearned = snapshot.slot;
+			lastLearnedSlot = Math.max(lastLearnedSlot, snapshot.slot - 1);
+			nextSlot = Math.max(nextSlot, firstUnlearned);
+			learned = true;
+			advancePrefix();
+		}
+		for (int i = 0; i < smsg.tail.length; i++) {
+			if (smsg.tailStart + i >= firstUnlearned) {
+				learn(smsg.tailStart + i, smsg.tail[i]);
+			}
+		}
+		catchUpRequestedAt = -1;
+	}
+
+	private void takeSnapshot() {
+		snapshot = new Snapshot(firstUnlearned, stateMachine.snapshot());
+		log.truncate(firstUnlearned);
+		compactStorage(firstUnlearned);
+	}
+
+	private void compactStorage(int slot) {
+		try {
+			storage.compact(slot);
+		} catch (IOException e) {
+			Main.fatalError("Node " + this.ID + " cannot compact its acceptor log: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Sends an acceptor answer once the state it reports is durable. With
+	 * <code>walGroupCommit</code> the answer waits for the end of the round,
+	 * so all records written in the round are synced together.
+	 */
+	private void sendDurable(TimestampedMessage ack) {
+		pendingAcks.add(ack);
+		if (!PaxosConfig.walGroupCommit) {
+			sendPendingAcks();
+		}
+	}
+
+	/**
+	 * Syncs the acceptor storage once and sends all acks held back since the
+	 * last call.
+	 */
+	public void sendPendingAcks() {
+		if (pendingAcks.isEmpty()) {
+			return;
+		}
+		try {
+			storage.sync();
+		} catch (IOException e) {
+			Main.fatalError("Node " + this.ID + " cannot sync its acceptor log: " + e.getMessage());
+		}
+		for (int i = 0; i < pendingAcks.size(); i++) {
+			sendTS(pendingAcks.get(i));
+		}
+		pendingAcks.clear();
+	}
+
+	private AcceptorStorage openStorage() {
+		if (!PaxosConfig.acceptorStorage.equals("wal")) {
+			return new MemoryStorage();
+		}
+		File file = new File(PaxosConfig.walDirectory, "acceptor-" + this.ID + ".wal");
+		try {
+			return new WriteAheadLog(file, PaxosConfig.walRecover);
+		} catch (IOException e) {
+			Main.fatalError("Node " + this.ID + " cannot open " + file + ": " + e.getMessage());
+			return new MemoryStorage();
+		}
+	}
+
+	/**
+	 * Rebuilds the acceptor state from stable storage, dropping whatever the
+	 * node held in memory.
+	 */
+	private void restoreAcceptorState() {
+		for (int i = log.first(); i < log.end(); i++) {
+			Slot slot = log.get(i);
+			slot.acceptedNumber = 0;
+			slot.acceptedValue = null;
+		}
+		try {
+			highestAcceptedProposalNumber = storage.recover(log);
+		} catch (IOException e) {
+			Main.fatalError("Node " + this.ID + " cannot read its acceptor log: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Builds the phase 1 answer, reporting every value accepted in a slot
+	 * from <code>from</code> on.
+	 */
+	private PrepareAckMessage promise(int number, int from, Node destination) {
+		from = Math.max(from, log.first());
+		int count = 0;
+		for (int i = from; i < log.end(); i++) {
+			if (log.get(i).acceptedValue != null) {
+				count++;
+			}
+		}
+		int[] slots = new int[count];
+		int[] numbers = new int[count];
+		Batch[] values = new Batch[count];
+		int j = 0;
+		for (int i = from; i < log.end(); i++) {
+			Slot slot = log.get(i);
+			if (slot.acceptedValue != null) {
+				slots[j] = i;
+				numbers[j] = slot.acceptedNumber;
+				values[j] = slot.acceptedValue;
+				j++;
+			}
+		}
+		return new PrepareAckMessage(this, destination, timestamp++, number, from, log.first(), slots, numbers, values);
+	}
+
+	/**
+	 * Called once phase 1 has completed: values that acceptors reported as
+	 * accepted must be proposed again before any new slot is opened. Slots
+	 * in between that nobody accepted a value for are filled with no-ops.
+	 */
+	private void reproposeAdopted() {
+		int start = Math.max(firstUnlearned, snapshotFloor);
+		int end = start;
+		for (int i = start; i < log.end(); i++) {
+			Slot slot = log.get(i);
+			if (slot.learned || slot.proposalValue != null) {
+				end = i + 1;
+			}
+		}
+		for (int i = start; i < end; i++) {
+			Slot slot = log.get(i);
+			if (!slot.learned) {
+				propose(i, slot.proposalValue == null ? Batch.NOOP : slot.proposalValue);
+			}
+		}
+		nextSlot = Math.max(nextSlot, end);
+	}
+
+	/**
+	 * @return The lowest proposal number of this node above every number it
+	 * has seen so far.
+	 */
+	private int nextProposalNumber() {
+		int above = Math.max(highestAcceptedProposalNumber, currentProposalNumber);
+		return (above / BALLOT_STRIDE + 1) * BALLOT_STRIDE + this.ID;
+	}
+
+	/**
+	 * Records a sign of life of the proposer with the given number. A
+	 * distinguished node that sees a higher number gives up.
+	 */
+	private void leaderSeen(Node n, int number) {
+		if (n == this) {
+			return;
+		}
+		if (distinguished && number > currentProposalNumber) {
+			stepDown(number);
+		}
+		leader = n;
+		lastHeartbeat = Global.currentTime;
+		suspectedSince = -1;
+	}
+
+	/**
+	 * Starts a new ballot with this node as proposer.
+	 */
+	private void becomeCandidate() {
+		distinguished = true;
+		lease.reset();
+		leader = this;
+		electionStartedAt = lastHeartbeat;
+		currentProposalNumber = nextProposalNumber();
+		ballotStartedAt = Global.currentTime;
+		proposalsAccepted.reset(currentProposalNumber);
+		snapshotFloor = 0;
+		ballotCommit = firstUnlearned;
+		for (int i = firstUnlearned; i < log.end(); i++) {
+			Slot slot = log.get(i);
+			if (!slot.learned) {
+				slot.proposalValue = null;
+				slot.adoptedNumber = 0;
+			}
+		}
+		nextSlot = firstUnlearned;
+		startPhase1();
+	}
+
+	private void leadershipEstablished() {
+		candidacyBackoff = 0;
+		if (electionStartedAt >= 0) {
+			leadershipRecoveries++;
+			recoveryRoundsSum += Global.currentTime - electionStartedAt;
+			electionStartedAt = -1;
+		}
+	}
+
+	/**
+	 * Gives up the current ballot after another proposer used a higher
+	 * number. The next candidacy is delayed by a random fraction of a backoff
+	 * that doubles with every conflict, so dueling proposers do not keep
+	 * preempting each other.
+	 */
+	private void stepDown(int number) {
+		ballotConflicts++;
+		wastedRounds += Global.currentTime - ballotStartedAt;
+		distinguished = false;
+		lease.reset();
+		pendingReads.clear();
+		readers.clear();
+		electionStartedAt = -1;
+		highestAcceptedProposalNumber = Math.max(highestAcceptedProposalNumber, number);
+		candidacyBackoff = candidacyBackoff == 0 ? PaxosConfig.heartbeatInterval 
+				: Math.min(2 * candidacyBackoff, PaxosConfig.maxRetransmitTimeout);
+		lastHeartbeat = Global.currentTime;
+		notCandidateBefore = Global.currentTime + PaxosConfig.leaderTimeout 
+				+ Tools.getRandomNumberGenerator().nextDouble() * candidacyBackoff;
+	}
+
+	/**
+	 * Called every <code>heartbeatInterval</code> rounds. The leader sends a
+	 * heartbeat; the other nodes stand for election once the leader has been
+	 * silent for <code>leaderTimeout</code> rounds and their rank-based delay
+	 * has passed.
+	 */
+	public void tick() {
+		if (!crashed && PaxosConfig.leaderless) {
+			broadcastTS(new InstanceFrontierMessage(this, null, timestamp++, instances.frontier()));
+		} else if (!crashed) {
+			if (distinguished) {
+				HeartbeatMessage heartbeat = new HeartbeatMessage(this, null, timestamp++, currentProposalNumber, announcedCommit - 1);
+				if (PaxosConfig.leaseDuration > 0) {
+					lease.requested(heartbeat.timestamp, Global.currentTime);
+				}
+				broadcastTS(heartbeat);
+			} else if (Global.currentTime - lastHeartbeat > PaxosConfig.leaderTimeout) {
+				if (suspectedSince < 0) {
+					suspectedSince = Global.currentTime;
+					notCandidateBefore = Math.max(notCandidateBefore, 
+							suspectedSince + rank() * PaxosConfig.heartbeatInterval);
+				}
+				if (Global.currentTime >= notCandidateBefore) {
+					becomeCandidate();
+				}
+			}
+		}
+		new HeartbeatTimer().startRelative(PaxosConfig.heartbeatInterval, this);
+	}
+
+	/**
+	 * @return The number of Paxos nodes of this group with a lower ID than
+	 * this node.
+	 */
+	private int rank() {
+		int rank = 0;
+		for (PaxosNode n : Cluster.members(group)) {
+			if (n.ID < this.ID) {
+				rank++;
+			}
+		}
+		return rank;
+	}
+
+	@NodePopupMethod(menuText="Crash")
+	public void crash() {
+		crashed = true;
+		distinguished = false;
+		lease.reset();
+		pendingReads.clear();
+		readers.clear();
+	}
+
+	@NodePopupMethod(menuText="Recover")
+	public void recover() {
+		crashed = false;
+		restoreAcceptorState();
+		lastHeartbeat = Global.currentTime;
+		suspectedSince = -1;
+		if (PaxosConfig.leaseDuration > 0) {
+			// the lease granted before the crash is forgotten, so refuse
+			// every proposer for as long as it may have been valid
+			leaseHolder = null;
+			leaseUntil = lease.promisedUntil(Global.currentTime);
+		}
+		// the retransmission timers of open instances expired while crashed,
+		// and so did the timer watching for missed commits
+		for (Instance instance : instances.uncommitted(this.ID)) {
+			startTimer(instance.status == Instance.ACCEPTED ? RetransmitTimer.INSTANCE_ACCEPT : RetransmitTimer.PRE_ACCEPT, 
+					instance.number);
+		}
+		if (PaxosConfig.leaderless) {
+			waitTimerRunning = false;
+			executeInstances();
+		}
+	}
+
+	/**
+	 * @return True if this acceptor granted a lease that has not expired yet
+	 * to another proposer than <code>n</code>.
+	 */
+	private boolean leasedToOther(Node n) {
+		return Global.currentTime < leaseUntil && leaseHolder != n;
+	}
+
+	/**
+	 * Answers the waiting client reads from the local state machine, which is
+	 * linearizable while the lease is held and everything chosen by earlier
+	 * proposers and learned by this one has been applied.
+	 */
+	private void serveReads() {
+		if (pendingReads.isEmpty() || !lease.held(Global.currentTime) || firstUnlearned < readFloor 
+				|| firstUnlearned <= lastLearnedSlot) {
+			return;
+		}
+		while (!pendingReads.isEmpty()) {
+			String command = pendingReads.poll();
+			Node reader = readers.poll();
+			String result = stateMachine.read(KeyValueStore.keyOf(command));
+			localReads++;
+			if (reader != this) {
+				sendTS(new ClientReplyMessage(this, reader, timestamp++, command, firstUnlearned, this.ID, result));
+			}
+		}
+	}
+
+	private void propose(int index, Batch value) {
+		Slot slot = log.get(index);
+		if (slot.proposalValue == null) {
+			slot.proposalValue = value;
+		}
+		slot.proposedAt = Global.currentTime;
+		slot.proposedNumber = currentProposalNumber;
+		broadcastTS(acceptRequest(null, index, slot.proposalValue));
+		startTimer(RetransmitTimer.ACCEPT, index);
+	}
+
+	private void startPhase1() {
+		phase1Started = true;
+		phase1StartedAt = Global.currentTime;
+		broadcastTS(new PrepareMessage(this, null, timestamp++, currentProposalNumber, firstUnlearned));
+		startTimer(RetransmitTimer.PREPARE, firstUnlearned);
+	}
+
+	/**
+	 * Tells all learners about the decisions not announced yet. Usually an
+	 * AcceptMessage has carried them already; otherwise the notification is
+	 * repeated with backoff until a newer one is sent.
+	 */
+	private void announceCommit() {
+		advanceBallotCommit();
+		if (ballotCommit <= announcedCommit) {
+			return;
+		}
+		announcedCommit = ballotCommit;
+		broadcastTS(new CommitMessage(this, null, timestamp++, currentProposalNumber, announcedCommit));
+		startTimer(RetransmitTimer.LEARN, announcedCommit);
+	}
+
+	/**
+	 * @return A phase 2 request for <code>index</code> that carries the
+	 * commit index of the current ballot. A broadcast request announces that
+	 * index.
+	 */
+	private AcceptMessage acceptRequest(Node destination, int index, Batch value) {
+		if (destination == null) {
+			announcedCommit = Math.max(announcedCommit, ballotCommit);
+		}
+		return new AcceptMessage(this, destination, timestamp++, currentProposalNumber, index, value, ballotCommit);
+	}
+
+	/**
+	 * Moves the commit index of the current ballot over the learned slots.
+	 * It stops at a slot this ballot proposed but that was learned from a
+	 * peer before its own quorum formed: followers apply the commit index to
+	 * the values they accepted in this ballot, so such a slot waits until
+	 * the retransmitted request has gathered that quorum.
+	 */
+	private void advanceBallotCommit() {
+		ballotCommit = Math.max(ballotCommit, log.first());
+		Slot slot;
+		while ((slot = log.peek(ballotCommit)) != null && slot.learned 
+				&& (slot.proposedNumber != currentProposalNumber || slot.decidedNumber == currentProposalNumber)) {
+			ballotCommit++;
+		}
+	}
+
+	/**
+	 * Learns the slots below <code>upTo</code> that this node accepted in
+	 * ballot <code>number</code>, which <code>leader</code> reported decided.
+	 * Slots accepted in another ballot or never received are fetched from
+	 * the leader once more than <code>pipelineWindow</code> of them are
+	 * missing; smaller gaps are usually requests still in flight, and the
+	 * next heartbeat reports any that were really lost.
+	 */
+	private void commit(int number, int upTo, Node leader) {
+		for (int i = Math.max(firstUnlearned, log.first()); i < upTo; i++) {
+			Slot slot = log.peek(i);
+			if (slot == null) {
+				break;
+			}
+			if (!slot.learned && slot.acceptedNumber == number && slot.acceptedValue != null) {
+				learn(i, slot.acceptedValue);
+			}
+		}
+		checkGap(leader, upTo - 1, PaxosConfig.pipelineWindow + 1);
+	}
+
+	private void startTimer(int phase, int index) {
+		RetransmitTimer timer = new RetransmitTimer(phase, currentProposalNumber, index, PaxosConfig.retransmitTimeout);
+		timer.startRelative(timer.timeout, this);
+	}
+
+	/**
+	 * Called when a retransmission timer fires. Resends the phase if it is
+	 * still incomplete, addressed to each acceptor that has not acked yet
+	 * when routing is enabled, and restarts the timer with backoff. Timers
+	 * of completed phases or old proposal numbers just expire.
+	 */
+	public void retransmit(RetransmitTimer timer) {
+		if (crashed) {
+			return;
+		}
+		if (PaxosConfig.leaderless) {
+			retransmitInstance(timer);
+			return;
+		}
+		if (!distinguished || timer.number != currentProposalNumber) {
+			return;
+		}
+		switch (timer.phase) {
+		case RetransmitTimer.PREPARE:
+			if (has_majority()) {
+				return;
+			}
+			if (PaxosConfig.unicastRouting) {
+				for (PaxosNode n : Cluster.members(group)) {
+					if (n != this && !proposalsAccepted.contains(n.ID)) {
+						sendTS(new PrepareMessage(this, n, timestamp++, currentProposalNumber, timer.slot));
+					}
+				}
+			} else {
+				broadcastTS(new PrepareMessage(this, null, timestamp++, currentProposalNumber, timer.slot));
+			}
+			break;
+		case RetransmitTimer.ACCEPT:
+			Slot slot = log.peek(timer.slot);
+			if (slot == null || slot.decidedNumber == currentProposalNumber 
+					|| (slot.learned && slot.proposedNumber != currentProposalNumber)) {
+				return;
+			}
+			if (PaxosConfig.unicastRouting) {
+				QuorumTracker accepts = acceptsOf(slot);
+				for (PaxosNode n : Cluster.members(group)) {
+					if (n != this && !accepts.contains(n.ID)) {
+						sendTS(acceptRequest(n, timer.slot, slot.proposalValue));
+					}
+				}
+			} else {
+				broadcastTS(acceptRequest(null, timer.slot, slot.proposalValue));
+			}
+			break;
+		case RetransmitTimer.LEARN:
+			if (timer.slot != announcedCommit) {
+				return;
+			}
+			broadcastTS(new CommitMessage(this, null, timestamp++, currentProposalNumber, announcedCommit));
+			break;
+		}
+		RetransmitTimer next = timer.backoff();
+		next.startRelative(next.timeout, this);
+	}
+
+	/**
+	 * Leaderless mode: resends the phase of an open instance of this node. An
+	 * instance that has a slow path quorum of PreAccept replies but is still
+	 * waiting for the fast path quorum switches to the slow path.
+	 */
+	private void retransmitInstance(RetransmitTimer timer) {
+		if (timer.phase == RetransmitTimer.INSTANCE_REQUEST) {
+			retryInstanceRequest(timer);
+			return;
+		}
+		Instance instance = instances.get(this.ID, timer.slot);
+		if (instance == null) {
+			return;
+		}
+		if (timer.phase == RetransmitTimer.PRE_ACCEPT && instance.status == Instance.PRE_ACCEPTED) {
+			if (instance.acks.size() >= Cluster.slowQuorum(group) - 1) {
+				acceptInstance(instance);
+				return;
+			}
+			broadcastTS(new PreAcceptMessage(this, null, timestamp++, instance.number, instance.value, 
+					instance.seq, instance.deps));
+		} else if (timer.phase == RetransmitTimer.INSTANCE_ACCEPT && instance.status == Instance.ACCEPTED) {
+			broadcastTS(new InstanceAcceptMessage(this, null, timestamp++, instance.number, instance.value, 
+					instance.seq, instance.deps));
+		} else {
+			return;
+		}
+		RetransmitTimer next = timer.backoff();
+		next.startRelative(next.timeout, this);
+	}
+
+	/**
+	 * Leaderless mode: the executor has been waiting for instance
+	 * <code>timer.slot</code> of replica <code>timer.number</code> for a
+	 * timeout. Unless it is committed by now, its commit is asked for: from
+	 * its command leader first, then from random replicas of the group.
+	 */
+	private void retryInstanceRequest(RetransmitTimer timer) {
+		Instance instance = instances.get(timer.number, timer.slot);
+		if (timer.slot <= instances.executedUpTo(timer.number) 
+				|| (instance != null && instance.status >= Instance.COMMITTED)) {
+			waitTimerRunning = false;
+			executeInstances();
+			return;
+		}
+		Node peer = Tools.getNodeByID(timer.number);
+		if (timer.timeout > PaxosConfig.retransmitTimeout || peer == null) {
+			List<PaxosNode> members = Cluster.members(group);
+			peer = members.isEmpty() ? null : members.get(Tools.getRandomNumberGenerator().nextInt(members.size()));
+		}
+		instancesRequestedAt = -1;
+		requestInstances(peer, timer.number, timer.slot, timer.slot);
+		RetransmitTimer next = timer.backoff();
+		next.startRelative(next.timeout, this);
+	}
+
+	/**
+	 * @return The votes collected for <code>slot</code> under the current
+	 * proposal number. Trackers of decided slots are recycled.
+	 */
+	private QuorumTracker acceptsOf(Slot slot) {
+		if (slot.accepts == null) {
+			slot.accepts = freeTrackers.isEmpty() ? new QuorumTracker() : freeTrackers.pop();
+			slot.accepts.reset(currentProposalNumber);
+		} else if (slot.accepts.getNumber() != currentProposalNumber) {
+			slot.accepts.reset(currentProposalNumber);
+		}
+		return slot.accepts;
+	}
+
+	private void learn(int index, Batch value) {
+		if (index < log.first()) {
+			return;
+		}
+		Slot slot = log.get(index);
+		if (slot.learned) {
+			return;
+		}
+		slot.learned = true;
+		slot.learnedValue = value;
+		if (slot.accepts != null) {
+			freeTrackers.push(slot.accepts);
+			slot.accepts = null;
+		}
+		learned = true;
+		decidedSlots++;
+		lastLearnedSlot = Math.max(lastLearnedSlot, index);
+		advancePrefix();
+	}
+
+	/**
+	 * Applies all learned slots that directly follow the learned prefix, and
+	 * takes a snapshot every <code>snapshotInterval</code> slots.
+	 */
+	private void advancePrefix() {
+		Slot next;
+		while ((next = log.peek(firstUnlearned)) != null && next.learned) {
+			deliver(firstUnlearned, next.learnedValue);
+			firstUnlearned++;
+		}
+		if (PaxosConfig.snapshotInterval > 0 && firstUnlearned - snapshot.slot >= PaxosConfig.snapshotInterval) {
+			takeSnapshot();
+		}
+		if (catchUpStartedAt >= 0 && firstUnlearned > catchUpTarget) {
+			double rounds = Global.currentTime - catchUpStartedAt;
+			catchUps++;
+			catchUpRoundsSum += rounds;
+			catchUpSlotsSum += catchUpGap;
+			Logging.getLogger().logln("Node " + this.ID + " caught up " + catchUpGap + " slots in " + rounds + " rounds");
+			catchUpStartedAt = -1;
+			catchUpRequestedAt = -1;
+		}
+	}
+
+	/**
+	 * Unpacks a decided batch and hands its commands to the application.
+	 * Called exactly once per slot, in slot order, even if slots are learned
+	 * out of order.
+	 */
+	private void deliver(int index, Batch value) {
+		for (int i = 0; i < value.size(); i++) {
+			String result = stateMachine.apply(value.get(i));
+			deliveredCommands++;
+			if (distinguished && value.get(i).startsWith(KeyValueStore.GET)) {
+				loggedReads++;
+			}
+			Node client = clients.remove(value.get(i));
+			if (client != null) {
+				sendTS(new ClientReplyMessage(this, client, timestamp++, value.get(i), index, this.ID, result));
+			}
+		}
+	}
+
+	/**
+	 * Cuts the next batch from the pending client commands, once either
+	 * batchSize commands are waiting or the oldest one has waited
+	 * maxBatchDelay rounds.
+	 * @return The batch, or null if no batch is ready yet.
+	 */
+	private Batch nextBatch() {
+		if (pendingCommands.isEmpty()) {
+			return null;
+		}
+		if (pendingCommands.size() < PaxosConfig.batchSize 
+				&& Global.currentTime - pendingSince.peek() < PaxosConfig.maxBatchDelay) {
+			return null;
+		}
+		int size = Math.min(PaxosConfig.batchSize, pendingCommands.size());
+		List<String> commands = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			commands.add(pendingCommands.poll());
+			pendingSince.poll();
+		}
+		return new Batch(commands);
 	}
 
 	@Override
 	public void preStep() {
-		// Proposer
-		if (distinguished) {
-			if (currentProposalValue == null) {
-				currentProposalNumber = 1;
-				currentProposalValue = "A";
-			}			
+		if (crashed) {
+			return;
+		}
+		if (PaxosConfig.leaderless) {
+			proposeLeaderless();
+			return;
+		}
+		// Client load: commandsPerRound new writes and readsPerRound reads of
+		// the keys of this group arrive at the proposer. Without leases, reads
+		// are ordered through the log like writes.
+		if (distinguished && PaxosConfig.multiPaxos) {
+			for (int i = 0; i < PaxosConfig.commandsPerRound; i++) {
+				pendingCommands.add(KeyValueStore.put(Cluster.randomKey(group), "A" + generatedCommands++));
+				pendingSince.add(Global.currentTime);
+			}
+			if (PaxosConfig.leaseDuration > 0) {
+				for (int i = 0; i < PaxosConfig.readsPerRound; i++) {
+					pendingReads.add(KeyValueStore.get(Cluster.randomKey(group)));
+					readers.add(this);
+				}
+			} else {
+				for (int i = 0; i < PaxosConfig.readsPerRound; i++) {
+					pendingCommands.add(KeyValueStore.get(Cluster.randomKey(group)));
+					pendingSince.add(Global.currentTime);
+				}
+			}
+		}
+		if (distinguished && !phase1Started) {
+			startPhase1();
+		}
+		// Proposer: keep up to pipelineWindow undecided slots in flight
+		if (distinguished && has_majority()) {
+			if (nextSlot == 0 && !PaxosConfig.multiPaxos) {
+				propose(nextSlot++, new Batch("A"));
+			}
+			while (PaxosConfig.multiPaxos && nextSlot - firstUnlearned < PaxosConfig.pipelineWindow) {
+				Batch batch = nextBatch();
+				if (batch == null) {
+					break;
+				}
+				propose(nextSlot++, batch);
+			}
+			announceCommit();
+			serveReads();
+		}
+	}
+
+	/**
+	 * Leaderless mode: every node of the group receives an equal share of
+	 * the commandsPerRound generated commands, and keeps up to
+	 * pipelineWindow instances of its own open.
+	 */
+	private void proposeLeaderless() {
+		loadCredit += (double) PaxosConfig.commandsPerRound / Math.max(1, Cluster.size(group));
+		for (; loadCredit >= 1; loadCredit--) {
+			pendingCommands.add(KeyValueStore.put(Cluster.randomKey(group), "A" + this.ID + "." + generatedCommands++));
+			pendingSince.add(Global.currentTime);
+		}
+		while (openInstances < PaxosConfig.pipelineWindow) {
+			Batch batch = nextBatch();
+			if (batch == null) {
+				break;
+			}
+			preAccept(batch);
 		}
 	}
 
 	@Override
 	public void init() {
-		if (this.ID == 1) {
+		group = Cluster.groupOf(this);
+		storage = openStorage();
+		if (PaxosConfig.walRecover) {
+			restoreAcceptorState();
+		}
+		// nodes 1 to groups start as the leaders of their groups, unless
+		// every node proposes on its own
+		if (this.ID <= Cluster.groups() && !PaxosConfig.leaderless) {
 			distinguished = true;
+			leader = this;
+			currentProposalNumber = nextProposalNumber();
+			proposalsAccepted.reset(currentProposalNumber);
 		}
+		new HeartbeatTimer().startRelative(PaxosConfig.heartbeatInterval, this);
 	}
 
 	@Override
-	public void neighborhoodChange() {
-		// Proposer
-		if (distinguished) {
-			PrepareMessage pmsg = new PrepareMessage(currentProposalNumber, currentProposalValue);
-			broadcastTS(pmsg);
-			if (has_majority()) {
-				AcceptMessage amsg = new AcceptMessage(currentProposalNumber, currentProposalValue);
-				broadcastTS(amsg);
-			}
-			if (learned) {
-				LearnMessage lmsg = new LearnMessage(learnedValue);
-				broadcastTS(lmsg);
-			}
-		}
-	}
+	public void neighborhoodChange() {}
 
-	private void sendTS(TimestampedMessage ts, Node n) {
-		ts.timestamp = timestamp++;
-		ts.originalSender = this;
-		ts.finalDestination = n;
-		broadcast(ts);
+	/**
+	 * Sends a message stamped by this node toward its final destination.
+	 */
+	private void sendTS(TimestampedMessage ts) {
+		Metrics.count(Metrics.SENT, ts);
+		transmit(ts, PaxosConfig.unicastRouting ? routes.nextHop(this, ts.finalDestination) : null);
 	}
 
 	private void broadcastTS(TimestampedMessage ts) {
-		ts.timestamp = timestamp++;
-		ts.originalSender = this;
-		broadcast(ts);
+		Metrics.count(Metrics.SENT, ts);
+		transmit(ts, null);
+	}
+
+	/**
+	 * Sends <code>msg</code> to the neighbor <code>hop</code>, or to all
+	 * neighbors if <code>hop</code> is <code>null</code>.
+	 */
+	protected void transmit(Message msg, Node hop) {
+		if (hop != null) {
+			send(msg, hop);
+		} else {
+			BandwidthTime.broadcast(this, msg);
+		}
 	}
 
 	@Override
 	public void postStep() {}
 
+	public boolean isDistinguished() {
+		return distinguished;
+	}
+
+	public int getDecidedSlots() {
+		return decidedSlots;
+	}
+
+	public long getStorageSyncs() {
+		return storage.syncCount();
+	}
+
+	public int getCatchUps() {
+		return catchUps;
+	}
+
+	public double getCatchUpRoundsSum() {
+		return catchUpRoundsSum;
+	}
+
+	public long getCatchUpSlotsSum() {
+		return catchUpSlotsSum;
+	}
+
+	public boolean isCrashed() {
+		return crashed;
+	}
+
+	public int getLeadershipRecoveries() {
+		return leadershipRecoveries;
+	}
+
+	public double getRecoveryRoundsSum() {
+		return recoveryRoundsSum;
+	}
+
+	public int getBallotConflicts() {
+		return ballotConflicts;
+	}
+
+	public double getWastedRounds() {
+		return wastedRounds;
+	}
+
+	public int getDeliveredCommands() {
+		return deliveredCommands;
+	}
+
+	public long getLocalReads() {
+		return localReads;
+	}
+
+	public long getLoggedReads() {
+		return loggedReads;
+	}
+
+	public int getFastCommits() {
+		return fastCommits;
+	}
+
+	public int getSlowCommits() {
+		return slowCommits;
+	}
+
+	/**
+	 * @return The average number of rounds between proposing a slot and
+	 * collecting a phase 2 quorum for it, or 0 if nothing was decided yet.
+	 */
+	public double getAverageCommitLatency() {
+		return commitLatencyCount == 0 ? 0 : commitLatencySum / commitLatencyCount;
+	}
+
+	private int currentAccepts() {
+		Slot slot = log.peek(nextSlot - 1);
+		return slot == null || slot.accepts == null ? 0 : slot.accepts.size();
+	}
+
 	@Override
 	public String toString() {
 		String s = "Node(" + this.ID + ")\n";
-		s += "Accepts: " + accepts + "\n";
-		s += "Proposal Ack:" + proposalsAccepted;
+		s += "Accepts: " + currentAccepts() + "\n";
+		s += "Proposal Ack:" + proposalsAccepted + "\n";
+		s += "Decided slots: " + decidedSlots;
 		return s;
 	}
 
 	private boolean has_majority() {
-		return proposalsAccepted.size() > N_NODES/2;
+		return proposalsAccepted.hasQuorum(Cluster.phase1Quorum(group));
 	}
 
 	@Override
 	public void draw(Graphics g, PositionTransformation pt, boolean highlight) {
-		if (learned) {
+		if (crashed) {
+			setColor(Color.GRAY);
+		} else if (learned) {
 			setColor(Color.ORANGE);
 		} else if (has_majority()) {
 			setColor(Color.GREEN);
@@ -226,7 +1562,10 @@ public class PaxosNode extends Node {
 		
 		String text = String.valueOf(this.ID);
 		if (distinguished) {
-			text += " (" + accepts.size() + "/" + proposalsAccepted.size() + ")";
+			text += " (" + currentAccepts() + "/" + proposalsAccepted.size() + ")";
+			if (PaxosConfig.multiPaxos) {
+				text += " #" + decidedSlots;
+			}
 		}
 		super.drawNodeAsSquareWithText(g, pt, highlight, text, 25, Color.WHITE);
 	}
@@ -0,0 +1,83 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.nodes.timers;
+
+import projects.paxos.PaxosConfig;
+import projects.paxos.nodes.nodeImplementations.PaxosNode;
+import sinalgo.nodes.timers.Timer;
+
+/**
+ * Retransmission timer of the proposer. One timer runs for phase 1, one for
+ * every slot in phase 2 and one for the latest commit notification; in the
+ * leaderless mode, one runs for every open instance, with the instance
+ * number as slot, and one for the instance of another replica the executor
+ * waits for, with the replica as number. When it fires, the node resends
+ * whatever part of the phase is still incomplete and restarts the timer with
+ * twice the timeout, up to <code>maxRetransmitTimeout</code>.
+ */
+public class RetransmitTimer extends Timer {
+	public static final int PREPARE = 0;
+	public static final int ACCEPT = 1;
+	public static final int LEARN = 2;
+	public static final int PRE_ACCEPT = 3;
+	public static final int INSTANCE_ACCEPT = 4;
+	public static final int INSTANCE_REQUEST = 5;
+
+	public final int phase;
+	public final int number;
+	public final int slot;
+	public final double timeout;
+
+	public RetransmitTimer(int phase, int number, int slot, double timeout) {
+		this.phase = phase;
+		this.number = number;
+		this.slot = slot;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @return A timer for the same phase with the next, doubled timeout.
+	 */
+	public RetransmitTimer backoff() {
+		return new RetransmitTimer(phase, number, slot, Math.min(2 * timeout, PaxosConfig.maxRetransmitTimeout));
+	}
+
+	@Override
+	public void fire() {
+		((PaxosNode) node).retransmit(this);
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.io.IOException;
+
+/**
+ * Stable storage of the acceptor state: the highest promised proposal number
+ * and the value accepted in each slot. A node must not answer a prepare or
+ * accept before the corresponding record has been made durable with
+ * {@link #sync()}.
+ */
+public interface AcceptorStorage {
+	/** Records a promise not to accept proposals below <code>number</code>. */
+	void promise(int number) throws IOException;
+
+	/** Records that <code>value</code> was accepted in <code>slot</code> under <code>number</code>. */
+	void accept(int slot, int number, Batch value) throws IOException;
+
+	/** Makes every record written so far durable. */
+	void sync() throws IOException;
+
+	/**
+	 * Restores the accepted values into <code>log</code>.
+	 * @return The highest promised proposal number.
+	 */
+	int recover(ReplicatedLog log) throws IOException;
+
+	/**
+	 * Drops the records of all slots below <code>slot</code>. Only called for
+	 * slots covered by a snapshot.
+	 */
+	void compact(int slot) throws IOException;
+
+	/** @return How often records had to be forced to stable storage. */
+	long syncCount();
+
+	void close() throws IOException;
+}
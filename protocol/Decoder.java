@@ -0,0 +1,105 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads what an {@link Encoder} wrote.
+ */
+public class Decoder {
+	private final byte[] data;
+	private int position = 0;
+
+	public Decoder(byte[] data) {
+		this.data = data;
+	}
+
+	public int readInt() {
+		long v = readLong();
+		if (v != (int) v) {
+			throw new IllegalArgumentException("Integer out of range at byte " + position);
+		}
+		return (int) v;
+	}
+
+	public long readLong() {
+		long v = 0;
+		int shift = 0;
+		while (true) {
+			if (position == data.length) {
+				throw new IllegalArgumentException("Truncated varint");
+			}
+			byte b = data[position++];
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+			shift += 7;
+			if (shift > 63) {
+				throw new IllegalArgumentException("Varint too long at byte " + position);
+			}
+		}
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	public byte[] readBytes() {
+		int n = readInt();
+		if (n < 0) {
+			return null;
+		}
+		if (n > data.length - position) {
+			throw new IllegalArgumentException("Truncated byte array of length " + n);
+		}
+		byte[] bytes = Arrays.copyOfRange(data, position, position + n);
+		position += n;
+		return bytes;
+	}
+
+	public String readString() {
+		byte[] bytes = readBytes();
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return True if all bytes have been read.
+	 */
+	public boolean done() {
+		return position == data.length;
+	}
+}
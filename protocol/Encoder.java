@@ -0,0 +1,146 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the compact binary wire format: integers as zig-zag varints, so
+ * that small numbers of either sign take a single byte, and byte arrays and
+ * strings prefixed with their length. An encoder created with
+ * {@link #counter()} only counts the bytes it would write.
+ */
+public class Encoder {
+	private byte[] buffer;
+	private int length = 0;
+
+	public Encoder() {
+		buffer = new byte[64];
+	}
+
+	private Encoder(byte[] buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * @return An encoder that stores nothing and only counts bytes.
+	 */
+	public static Encoder counter() {
+		return new Encoder(null);
+	}
+
+	public Encoder writeInt(int value) {
+		return writeLong(value);
+	}
+
+	public Encoder writeLong(long value) {
+		long v = (value << 1) ^ (value >> 63);
+		while ((v & ~0x7FL) != 0) {
+			put((byte) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		put((byte) v);
+		return this;
+	}
+
+	/** Writes <code>bytes</code>, which may be <code>null</code>, with its length. */
+	public Encoder writeBytes(byte[] bytes) {
+		if (bytes == null) {
+			return writeInt(-1);
+		}
+		writeInt(bytes.length);
+		if (buffer == null) {
+			length += bytes.length;
+		} else {
+			for (byte b : bytes) {
+				put(b);
+			}
+		}
+		return this;
+	}
+
+	/** Writes <code>s</code>, which may be <code>null</code>, as UTF-8 with its length. */
+	public Encoder writeString(String s) {
+		if (s == null) {
+			return writeInt(-1);
+		}
+		if (buffer == null) {
+			int n = utf8Length(s);
+			writeInt(n);
+			length += n;
+			return this;
+		}
+		return writeBytes(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public byte[] toByteArray() {
+		return buffer == null ? null : Arrays.copyOf(buffer, length);
+	}
+
+	private void put(byte b) {
+		if (buffer != null) {
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, 2 * length);
+			}
+			buffer[length] = b;
+		}
+		length++;
+	}
+
+	private static int utf8Length(String s) {
+		int n = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				n += 1;
+			} else if (c < 0x800) {
+				n += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+				n += 4;
+				i++;
+			} else {
+				n += 3;
+			}
+		}
+		return n;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+/**
+ * One instance of the leaderless mode: the batch that replica
+ * <code>replica</code> proposed as its <code>number</code>th command, with
+ * the attributes that order it against interfering instances. Dependencies
+ * are indexed by replica ID and hold the latest interfering instance of that
+ * replica, or -1; the interfering instances of that replica before it are
+ * dependencies as well.
+ */
+public class Instance {
+	public static final int NONE = 0;
+	public static final int PRE_ACCEPTED = 1;
+	public static final int ACCEPTED = 2;
+	public static final int COMMITTED = 3;
+	public static final int EXECUTED = 4;
+
+	public final int replica;
+	public final int number;
+	public Batch value;
+	public int seq = 0;
+	public int[] deps = new int[0];
+	public int status = NONE;
+
+	// command leader only: replies of the current phase and whether any of
+	// them reported other attributes than proposed
+	public QuorumTracker acks = new QuorumTracker();
+	public boolean changed = false;
+	public double proposedAt = 0;
+
+	// scratch space of the executor: the replica and the instance number of
+	// the next dependency to look at, and the keys of the batch
+	int index = -1;
+	int lowlink = 0;
+	int cursor = 0;
+	int next = 0;
+	boolean onStack = false;
+	String[] keys = null;
+	Batch keysOf = null;
+
+	public Instance(int replica, int number) {
+		this.replica = replica;
+		this.number = number;
+	}
+}
@@ -0,0 +1,495 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instances of the leaderless mode known to one replica, in the style of
+ * EPaxos. Two instances interfere if their batches touch a common key. For
+ * every key the space remembers the latest instance of each replica and the
+ * highest sequence number that touched it, so the attributes of a new
+ * instance are found without scanning the instances.
+ * <p>
+ * Committed instances are executed once everything they depend on is
+ * committed: strongly connected components of the dependency graph in
+ * reverse topological order, and the instances of a component by sequence
+ * number, then replica ID. Every replica thus executes interfering instances
+ * in the same order. As the dependencies of an instance are merged over all
+ * its keys, an instance depends on every interfering instance of replica
+ * <code>r</code> up to <code>deps[r]</code>, not only on that one.
+ * <p>
+ * Executed instances are kept so that replicas that missed their commits
+ * can fetch them, until every replica of the group reports them executed;
+ * then they are dropped, and later messages about them find them executed.
+ * A replica that has to wait for an instance it does not know to be
+ * committed reports it through {@link #waitingReplica()} and
+ * {@link #waitingNumber()}.
+ */
+public class InstanceSpace {
+	/** Applies an executed instance. */
+	public interface Executor {
+		void execute(Instance instance);
+	}
+
+	static final Comparator<Instance> EXECUTION_ORDER = new Comparator<Instance>() {
+		public int compare(Instance a, Instance b) {
+			if (a.seq != b.seq) {
+				return a.seq < b.seq ? -1 : 1;
+			}
+			if (a.replica != b.replica) {
+				return a.replica < b.replica ? -1 : 1;
+			}
+			return a.number < b.number ? -1 : (a.number == b.number ? 0 : 1);
+		}
+	};
+
+	private final Map<Long, Instance> instances = new HashMap<Long, Instance>();
+	private final Map<String, int[]> latest = new HashMap<String, int[]>();
+	private final Map<String, Integer> maxSeq = new HashMap<String, Integer>();
+	private final List<Instance> committed = new ArrayList<Instance>();
+	// per replica, the highest number up to which all instances are executed,
+	// and the highest number up to which they are dropped
+	private int[] executedUpTo = new int[0];
+	private int[] droppedUpTo = new int[0];
+	// the instance the last execution had to wait for, or -1
+	private int waitingReplica = -1;
+	private int waitingNumber = -1;
+
+	/** Dependency the executor has to wait for. */
+	private static final Instance BLOCKED = new Instance(-1, -1);
+
+	/**
+	 * @return The instance, or null if this replica has not heard of it.
+	 */
+	public Instance get(int replica, int number) {
+		return instances.get(((long) replica << 32) | number);
+	}
+
+	/**
+	 * @return The instance, created if this replica has not heard of it. An
+	 * instance that was executed and dropped is returned as a new, executed
+	 * instance that is not kept.
+	 */
+	public Instance getOrCreate(int replica, int number) {
+		Instance instance = get(replica, number);
+		if (instance == null) {
+			instance = new Instance(replica, number);
+			if (number <= upTo(droppedUpTo, replica)) {
+				instance.status = Instance.EXECUTED;
+			} else {
+				instances.put(((long) replica << 32) | number, instance);
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @return The number of instances kept.
+	 */
+	public int size() {
+		return instances.size();
+	}
+
+	/**
+	 * @return The number up to which all instances of <code>replica</code>
+	 * are executed, or -1.
+	 */
+	public int executedUpTo(int replica) {
+		return upTo(executedUpTo, replica);
+	}
+
+	/**
+	 * @return The executed prefix of every replica, indexed by replica ID.
+	 */
+	public int[] frontier() {
+		return executedUpTo.clone();
+	}
+
+	/**
+	 * @return The first instance of <code>replica</code> numbered up to
+	 * <code>upTo</code> that is not known to be committed, or -1.
+	 */
+	public int firstMissing(int replica, int upTo) {
+		for (int n = executedUpTo(replica) + 1; n <= upTo; n++) {
+			Instance instance = get(replica, n);
+			if (instance == null || instance.status < Instance.COMMITTED) {
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The replica of the instance the last call of
+	 * {@link #execute(Executor)} had to wait for, or -1 if it did not wait.
+	 */
+	public int waitingReplica() {
+		return waitingReplica;
+	}
+
+	public int waitingNumber() {
+		return waitingNumber;
+	}
+
+	/**
+	 * Drops the executed instances of every replica <code>r</code> up to
+	 * <code>upTo[r]</code>, the executed prefix of the whole group.
+	 */
+	public void prune(int[] upTo) {
+		for (int r = 0; r < upTo.length; r++) {
+			int limit = Math.min(upTo[r], executedUpTo(r));
+			int n = upTo(droppedUpTo, r) + 1;
+			if (n > limit) {
+				continue;
+			}
+			for (; n <= limit; n++) {
+				instances.remove(((long) r << 32) | n);
+			}
+			droppedUpTo = grow(droppedUpTo, r);
+			droppedUpTo[r] = limit;
+		}
+	}
+
+	private static int upTo(int[] prefixes, int replica) {
+		return replica < prefixes.length ? prefixes[replica] : -1;
+	}
+
+	/**
+	 * @return <code>prefixes</code>, grown to hold <code>replica</code>, with
+	 * -1 for the new replicas.
+	 */
+	private static int[] grow(int[] prefixes, int replica) {
+		if (replica < prefixes.length) {
+			return prefixes;
+		}
+		int[] grown = Arrays.copyOf(prefixes, Math.max(replica + 1, 2 * prefixes.length));
+		Arrays.fill(grown, prefixes.length, grown.length, -1);
+		return grown;
+	}
+
+	/**
+	 * Raises the attributes of <code>instance</code> above those of every
+	 * interfering instance recorded so far. The dependencies are replaced by
+	 * a new array, as the old one may be shared with a message.
+	 */
+	public void interfere(Instance instance) {
+		int seq = instance.seq;
+		int[] deps = instance.deps;
+		for (int i = 0; i < instance.value.size(); i++) {
+			String key = KeyValueStore.keyOf(instance.value.get(i));
+			if (key == null) {
+				continue;
+			}
+			Integer s = maxSeq.get(key);
+			if (s != null) {
+				seq = Math.max(seq, s + 1);
+			}
+			int[] l = latest.get(key);
+			if (l != null) {
+				int own = instance.replica < l.length ? l[instance.replica] : -1;
+				if (own == instance.number) {
+					// never depend on the instance itself
+					l = l.clone();
+					l[instance.replica] = -1;
+				}
+				deps = merge(deps, l);
+			}
+		}
+		instance.seq = seq;
+		instance.deps = deps == instance.deps ? deps.clone() : deps;
+	}
+
+	/**
+	 * Makes <code>instance</code> interfere with the instances proposed
+	 * after it.
+	 */
+	public void record(Instance instance) {
+		for (int i = 0; i < instance.value.size(); i++) {
+			String key = KeyValueStore.keyOf(instance.value.get(i));
+			if (key == null) {
+				continue;
+			}
+			Integer s = maxSeq.get(key);
+			if (s == null || s < instance.seq) {
+				maxSeq.put(key, instance.seq);
+			}
+			int[] l = latest.get(key);
+			if (l == null || l.length <= instance.replica) {
+				int[] grown = new int[instance.replica + 1];
+				Arrays.fill(grown, -1);
+				if (l != null) {
+					System.arraycopy(l, 0, grown, 0, l.length);
+				}
+				l = grown;
+				latest.put(key, l);
+			}
+			l[instance.replica] = Math.max(l[instance.replica], instance.number);
+		}
+	}
+
+	/**
+	 * Marks <code>instance</code> committed with its final attributes.
+	 */
+	public void commit(Instance instance) {
+		if (instance.status >= Instance.COMMITTED) {
+			return;
+		}
+		instance.status = Instance.COMMITTED;
+		record(instance);
+		committed.add(instance);
+	}
+
+	/**
+	 * Executes every committed instance whose dependencies are all
+	 * committed.
+	 * @return The number of instances executed.
+	 */
+	public int execute(Executor executor) {
+		int executed = 0;
+		waitingReplica = -1;
+		waitingNumber = -1;
+		for (int i = 0; i < committed.size(); i++) {
+			Instance instance = committed.get(i);
+			if (instance.status == Instance.COMMITTED) {
+				executed += visit(instance, executor);
+			}
+		}
+		Iterator<Instance> it = committed.iterator();
+		while (it.hasNext()) {
+			if (it.next().status == Instance.EXECUTED) {
+				it.remove();
+			}
+		}
+		return executed;
+	}
+
+	/**
+	 * @return The instances of <code>replica</code> that are not committed
+	 * yet.
+	 */
+	public List<Instance> uncommitted(int replica) {
+		List<Instance> open = new ArrayList<Instance>();
+		for (Instance instance : instances.values()) {
+			if (instance.replica == replica && instance.status < Instance.COMMITTED) {
+				open.add(instance);
+			}
+		}
+		return open;
+	}
+
+	/**
+	 * Iterative Tarjan search from <code>root</code>. A component is executed
+	 * as soon as it is complete, as by then everything it depends on was
+	 * executed; the search stops at the first dependency that is not
+	 * committed.
+	 */
+	private int visit(Instance root, Executor executor) {
+		int executed = 0;
+		int counter = 0;
+		List<Instance> visited = new ArrayList<Instance>();
+		ArrayDeque<Instance> stack = new ArrayDeque<Instance>();
+		ArrayDeque<Instance> path = new ArrayDeque<Instance>();
+		root.index = root.lowlink = counter++;
+		visited.add(root);
+		stack.push(root);
+		root.onStack = true;
+		path.push(root);
+		while (!path.isEmpty()) {
+			Instance v = path.peek();
+			Instance w = nextDependency(v);
+			if (w == BLOCKED) {
+				break;
+			}
+			if (w != null) {
+				if (w.index < 0) {
+					w.index = w.lowlink = counter++;
+					w.cursor = 0;
+					w.next = 0;
+					visited.add(w);
+					stack.push(w);
+					w.onStack = true;
+					path.push(w);
+				} else if (w.onStack) {
+					v.lowlink = Math.min(v.lowlink, w.index);
+				}
+				continue;
+			}
+			path.pop();
+			if (!path.isEmpty()) {
+				path.peek().lowlink = Math.min(path.peek().lowlink, v.lowlink);
+			}
+			if (v.lowlink == v.index) {
+				List<Instance> component = new ArrayList<Instance>();
+				Instance u;
+				do {
+					u = stack.pop();
+					u.onStack = false;
+					component.add(u);
+				} while (u != v);
+				Collections.sort(component, EXECUTION_ORDER);
+				for (Instance c : component) {
+					executor.execute(c);
+					c.status = Instance.EXECUTED;
+					executed++;
+				}
+				for (Instance c : component) {
+					advance(c.replica);
+				}
+			}
+		}
+		for (Instance v : visited) {
+			v.index = -1;
+			v.cursor = 0;
+			v.next = 0;
+			v.onStack = false;
+		}
+		return executed;
+	}
+
+	/**
+	 * Advances the cursor of <code>v</code> to its next dependency that is
+	 * not executed yet: an interfering instance of replica <code>r</code>
+	 * numbered up to <code>v.deps[r]</code>.
+	 * @return The dependency, <code>BLOCKED</code> if <code>v</code> has to
+	 * wait for an instance that is unknown or not committed, or null if no
+	 * dependencies are left.
+	 */
+	private Instance nextDependency(Instance v) {
+		while (v.cursor < v.deps.length) {
+			int r = v.cursor;
+			int n = Math.max(v.next, executedUpTo(r) + 1);
+			if (n > v.deps[r]) {
+				v.cursor++;
+				v.next = 0;
+				continue;
+			}
+			v.next = n + 1;
+			Instance w = get(r, n);
+			if (w == v || (w != null && w.status == Instance.EXECUTED)) {
+				continue;
+			}
+			if (w == null || w.value == null || (w.status < Instance.COMMITTED && interfere(v, w))) {
+				waitingReplica = r;
+				waitingNumber = n;
+				return BLOCKED;
+			}
+			if (w.status >= Instance.COMMITTED && interfere(v, w)) {
+				return w;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Extends the executed prefix of <code>replica</code> over the executed
+	 * instances that follow it without a gap.
+	 */
+	private void advance(int replica) {
+		executedUpTo = grow(executedUpTo, replica);
+		for (int n = executedUpTo[replica] + 1; ; n++) {
+			Instance instance = get(replica, n);
+			if (instance == null || instance.status != Instance.EXECUTED) {
+				break;
+			}
+			executedUpTo[replica] = n;
+		}
+	}
+
+	/**
+	 * @return True if the batches of <code>a</code> and <code>b</code> touch
+	 * a common key.
+	 */
+	static boolean interfere(Instance a, Instance b) {
+		String[] ka = keys(a);
+		String[] kb = keys(b);
+		for (int i = 0; i < ka.length; i++) {
+			for (int j = 0; j < kb.length; j++) {
+				if (ka[i].equals(kb[j])) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static String[] keys(Instance instance) {
+		if (instance.keysOf != instance.value) {
+			List<String> keys = new ArrayList<String>(instance.value.size());
+			for (int i = 0; i < instance.value.size(); i++) {
+				String key = KeyValueStore.keyOf(instance.value.get(i));
+				if (key != null) {
+					keys.add(key);
+				}
+			}
+			instance.keys = keys.toArray(new String[keys.size()]);
+			instance.keysOf = instance.value;
+		}
+		return instance.keys;
+	}
+
+	/**
+	 * @return The element-wise maximum of two dependency arrays.
+	 */
+	public static int[] merge(int[] a, int[] b) {
+		int[] m = new int[Math.max(a.length, b.length)];
+		for (int i = 0; i < m.length; i++) {
+			m[i] = Math.max(i < a.length ? a[i] : -1, i < b.length ? b[i] : -1);
+		}
+		return m;
+	}
+
+	/**
+	 * @return True if both arrays name the same dependencies.
+	 */
+	public static boolean sameDeps(int[] a, int[] b) {
+		for (int i = 0; i < Math.max(a.length, b.length); i++) {
+			if ((i < a.length ? a[i] : -1) != (i < b.length ? b[i] : -1)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replicated key-value map. Commands are <code>put key value</code>,
+ * <code>get key</code> and <code>del key</code>; keys contain no spaces.
+ * Other commands, such as the no-ops that fill gaps in the log, are counted
+ * but change nothing.
+ */
+public class KeyValueStore implements StateMachine {
+	public static final String PUT = "put ";
+	public static final String GET = "get ";
+	public static final String DEL = "del ";
+
+	private final Map<String, String> map = new TreeMap<String, String>();
+	private long applied = 0;
+
+	public static String put(String key, String value) {
+		return PUT + key + " " + value;
+	}
+
+	public static String get(String key) {
+		return GET + key;
+	}
+
+	public static String del(String key) {
+		return DEL + key;
+	}
+
+	/**
+	 * @return The key <code>command</code> reads or writes, or null if it is
+	 * not a key-value command.
+	 */
+	public static String keyOf(String command) {
+		if (!command.startsWith(PUT) && !command.startsWith(GET) && !command.startsWith(DEL)) {
+			return null;
+		}
+		int end = command.indexOf(' ', 4);
+		return end < 0 ? command.substring(4) : command.substring(4, end);
+	}
+
+	/**
+	 * @return The value of the key after a put, before a del or at a get;
+	 * null if the key has no value or the command is not a key-value command.
+	 */
+	public String apply(String command) {
+		applied++;
+		String key = keyOf(command);
+		if (key == null) {
+			return null;
+		}
+		if (command.startsWith(PUT)) {
+			int start = PUT.length() + key.length() + 1;
+			String value = start < command.length() ? command.substring(start) : "";
+			map.put(key, value);
+			return value;
+		}
+		if (command.startsWith(DEL)) {
+			return map.remove(key);
+		}
+		return map.get(key);
+	}
+
+	/**
+	 * Reads <code>key</code> without going through the log.
+	 */
+	public String read(String key) {
+		return map.get(key);
+	}
+
+	public byte[] snapshot() {
+		Encoder out = new Encoder().writeLong(applied).writeInt(map.size());
+		for (Map.Entry<String, String> e : map.entrySet()) {
+			out.writeString(e.getKey()).writeString(e.getValue());
+		}
+		return out.toByteArray();
+	}
+
+	public void restore(byte[] snapshot) {
+		Decoder in = new Decoder(snapshot);
+		applied = in.readLong();
+		map.clear();
+		for (int n = in.readInt(); n > 0; n--) {
+			map.put(in.readString(), in.readString());
+		}
+	}
+
+	public long getApplied() {
+		return applied;
+	}
+
+	public int size() {
+		return map.size();
+	}
+}
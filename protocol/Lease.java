@@ -0,0 +1,126 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+/**
+ * Read lease of a distinguished proposer. Each lease request is identified
+ * by the timestamp of the heartbeat that carried it; once a quorum of
+ * acceptors granted the same request, the lease is valid until the time the
+ * request was sent plus the lease duration, shortened by the clock drift
+ * bound. Acceptors count their promise from the time they received the
+ * request and stretch it by the same bound, so the promise always outlasts
+ * the lease.
+ */
+public class Lease {
+	/** Number of requests that may collect grants at the same time. */
+	static final int PENDING = 8;
+
+	private final double duration;
+	private final double drift;
+	private final int[] requests = new int[PENDING];
+	private final double[] sentAt = new double[PENDING];
+	private final QuorumTracker[] grants = new QuorumTracker[PENDING];
+	private int next = 0;
+	private double validUntil = -1;
+
+	/**
+	 * @param duration Rounds an acceptor promises not to help another proposer.
+	 * @param drift Bound on the relative clock drift between two nodes.
+	 */
+	public Lease(double duration, double drift) {
+		this.duration = duration;
+		this.drift = drift;
+		for (int i = 0; i < PENDING; i++) {
+			grants[i] = new QuorumTracker();
+			sentAt[i] = -1;
+		}
+	}
+
+	/**
+	 * @return The rounds an acceptor granting a request at <code>now</code>
+	 * must refuse other proposers for.
+	 */
+	public double promisedUntil(double now) {
+		return now + duration * (1 + drift);
+	}
+
+	/**
+	 * Starts collecting grants for the request sent at <code>now</code> with
+	 * the given timestamp. The oldest pending request is forgotten.
+	 */
+	public void requested(int request, double now) {
+		int i = next;
+		next = (next + 1) % PENDING;
+		requests[i] = request;
+		sentAt[i] = now;
+		grants[i].reset(request);
+	}
+
+	/**
+	 * Counts a grant of acceptor <code>id</code>, and extends the lease if the
+	 * request reached a quorum. Grants of forgotten requests are ignored.
+	 */
+	public void granted(int request, int id, int quorum) {
+		for (int i = 0; i < PENDING; i++) {
+			if (sentAt[i] >= 0 && requests[i] == request) {
+				grants[i].add(id);
+				if (grants[i].hasQuorum(quorum)) {
+					validUntil = Math.max(validUntil, sentAt[i] + duration * (1 - drift));
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return True if the lease is valid at <code>now</code>, so no other
+	 * proposer can get a value chosen.
+	 */
+	public boolean held(double now) {
+		return now < validUntil;
+	}
+
+	/**
+	 * Gives up the lease and all pending requests.
+	 */
+	public void reset() {
+		validUntil = -1;
+		for (int i = 0; i < PENDING; i++) {
+			sentAt[i] = -1;
+		}
+	}
+}
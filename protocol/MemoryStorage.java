@@ -0,0 +1,83 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+/**
+ * Acceptor storage that survives simulated crashes but does no I/O; it
+ * models a stable storage whose writes cost nothing.
+ */
+public class MemoryStorage implements AcceptorStorage {
+	private int promised = 0;
+	private ReplicatedLog stable = new ReplicatedLog();
+	private long syncs = 0;
+
+	public void promise(int number) {
+		promised = Math.max(promised, number);
+	}
+
+	public void accept(int slot, int number, Batch value) {
+		promise(number);
+		Slot s = stable.get(slot);
+		s.acceptedNumber = number;
+		s.acceptedValue = value;
+	}
+
+	public void sync() {
+		syncs++;
+	}
+
+	public int recover(ReplicatedLog log) {
+		for (int i = Math.max(stable.first(), log.first()); i < stable.end(); i++) {
+			Slot s = stable.get(i);
+			if (s.acceptedValue != null) {
+				log.get(i).acceptedNumber = s.acceptedNumber;
+				log.get(i).acceptedValue = s.acceptedValue;
+			}
+		}
+		return promised;
+	}
+
+	public void compact(int slot) {
+		stable.truncate(slot);
+	}
+
+	public long syncCount() {
+		return syncs;
+	}
+
+	public void close() {}
+}
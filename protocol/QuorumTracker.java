@@ -0,0 +1,121 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.util.Arrays;
+
+/**
+ * Set of node IDs that voted for a proposal, backed by a bit array with a
+ * running count. Adding a vote and checking for a quorum are O(1) and do not
+ * allocate once the array is large enough, so a tracker can be reset and
+ * reused for the next proposal number or slot.
+ */
+public class QuorumTracker {
+	private long[] words = new long[1];
+	private int count = 0;
+	private int number = 0;
+
+	/**
+	 * Adds a vote.
+	 * @return True if <code>id</code> had not voted yet.
+	 */
+	public boolean add(int id) {
+		int w = id >>> 6;
+		if (w >= words.length) {
+			words = Arrays.copyOf(words, Math.max(words.length * 2, w + 1));
+		}
+		long bit = 1L << id;
+		if ((words[w] & bit) != 0) {
+			return false;
+		}
+		words[w] |= bit;
+		count++;
+		return true;
+	}
+
+	public boolean contains(int id) {
+		int w = id >>> 6;
+		return w < words.length && (words[w] & (1L << id)) != 0;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return True if at least <code>quorumSize</code> nodes voted.
+	 */
+	public boolean hasQuorum(int quorumSize) {
+		return count >= quorumSize;
+	}
+
+	/**
+	 * @return The proposal number the votes belong to.
+	 */
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * Drops all votes and starts collecting votes for proposal <code>n</code>.
+	 * The bit array is kept.
+	 */
+	public void reset(int n) {
+		if (count > 0) {
+			Arrays.fill(words, 0L);
+			count = 0;
+		}
+		number = n;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int w = 0; w < words.length; w++) {
+			long word = words[w];
+			while (word != 0) {
+				int id = (w << 6) + Long.numberOfTrailingZeros(word);
+				if (sb.length() > 1) {
+					sb.append(", ");
+				}
+				sb.append(id);
+				word &= word - 1;
+			}
+		}
+		return sb.append("]").toString();
+	}
+}
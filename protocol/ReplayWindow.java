@@ -0,0 +1,120 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.util.Arrays;
+
+/**
+ * Per-origin sliding-window duplicate filter, as used for IPsec anti-replay.
+ * For every origin it keeps the highest timestamp seen and a bitmap of the
+ * <code>size</code> timestamps below it, so messages that arrive out of
+ * order are still accepted exactly once. Timestamps that fall behind the
+ * window are rejected as too old. Memory is <code>size</code> bits per origin;
+ * the tables grow when nodes with higher IDs show up.
+ */
+public class ReplayWindow {
+	public static final int FRESH = 0;
+	public static final int DUPLICATE = 1;
+	public static final int TOO_OLD = 2;
+
+	private final int size;
+	private final int wordsPerOrigin;
+	private int[] highest = new int[0];
+	private long[] bits = new long[0];
+
+	/**
+	 * @param size Window size in timestamps, rounded up to a multiple of 64.
+	 */
+	public ReplayWindow(int size) {
+		this.wordsPerOrigin = Math.max(1, (size + 63) / 64);
+		this.size = wordsPerOrigin * 64;
+	}
+
+	/**
+	 * Classifies <code>timestamp</code> of a message from <code>origin</code>
+	 * and marks it as seen if it is fresh.
+	 * @return FRESH, DUPLICATE or TOO_OLD.
+	 */
+	public int check(int origin, int timestamp) {
+		if (origin >= highest.length) {
+			grow(origin + 1);
+		}
+		int top = highest[origin];
+		int base = origin * wordsPerOrigin;
+		if (timestamp > top) {
+			if (timestamp - top >= size) {
+				Arrays.fill(bits, base, base + wordsPerOrigin, 0L);
+			} else {
+				for (int t = top + 1; t < timestamp; t++) {
+					clear(base, t);
+				}
+			}
+			set(base, timestamp);
+			highest[origin] = timestamp;
+			return FRESH;
+		}
+		if (top - timestamp >= size) {
+			return TOO_OLD;
+		}
+		int p = timestamp % size;
+		long bit = 1L << p;
+		int w = base + (p >>> 6);
+		if ((bits[w] & bit) != 0) {
+			return DUPLICATE;
+		}
+		bits[w] |= bit;
+		return FRESH;
+	}
+
+	private void set(int base, int timestamp) {
+		int p = timestamp % size;
+		bits[base + (p >>> 6)] |= 1L << p;
+	}
+
+	private void clear(int base, int timestamp) {
+		int p = timestamp % size;
+		bits[base + (p >>> 6)] &= ~(1L << p);
+	}
+
+	private void grow(int origins) {
+		int old = highest.length;
+		int n = Math.max(old * 2, origins);
+		highest = Arrays.copyOf(highest, n);
+		Arrays.fill(highest, old, n, -1);
+		bits = Arrays.copyOf(bits, n * wordsPerOrigin);
+	}
+}
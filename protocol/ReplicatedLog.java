@@ -0,0 +1,103 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.util.ArrayList;
+
+/**
+ * Slot-indexed log of Paxos instances. Slots are created on first access.
+ * A prefix of decided slots can be dropped once it is covered by a snapshot;
+ * slots below {@link #first()} are gone for good.
+ */
+public class ReplicatedLog {
+	private ArrayList<Slot> slots = new ArrayList<Slot>();
+	private int first = 0;
+
+	/**
+	 * Returns the slot with the given index, creating it (and all slots
+	 * before it) if necessary. The index must not be below {@link #first()}.
+	 */
+	public Slot get(int index) {
+		if (index < first) {
+			throw new IndexOutOfBoundsException("Slot " + index + " was compacted, log starts at " + first);
+		}
+		while (end() <= index) {
+			slots.add(new Slot());
+		}
+		return slots.get(index - first);
+	}
+
+	/**
+	 * Returns the slot with the given index, or null if it was never touched
+	 * or has been compacted.
+	 */
+	public Slot peek(int index) {
+		if (index < first || index >= end()) {
+			return null;
+		}
+		return slots.get(index - first);
+	}
+
+	/**
+	 * Drops all slots below <code>index</code>.
+	 */
+	public void truncate(int index) {
+		if (index <= first) {
+			return;
+		}
+		if (index >= end()) {
+			slots.clear();
+		} else {
+			slots.subList(0, index - first).clear();
+		}
+		first = index;
+	}
+
+	/**
+	 * @return The lowest slot index still held.
+	 */
+	public int first() {
+		return first;
+	}
+
+	/**
+	 * @return One past the highest slot index that has been touched.
+	 */
+	public int end() {
+		return first + slots.size();
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.util.Arrays;
+
+import sinalgo.nodes.Node;
+
+/**
+ * Next-hop table toward other nodes, indexed by node ID. Entries are learnt
+ * from flooded traffic: the neighbor that delivered a fresh message from some
+ * origin is on a path back to that origin.
+ */
+public class RoutingTable {
+	private Node[] nextHop = new Node[16];
+
+	/**
+	 * Records that <code>neighbor</code> forwarded a message originating at
+	 * <code>destination</code>.
+	 */
+	public void learn(Node destination, Node neighbor) {
+		if (destination == null || neighbor == null) {
+			return;
+		}
+		if (destination.ID >= nextHop.length) {
+			nextHop = Arrays.copyOf(nextHop, Math.max(nextHop.length * 2, destination.ID + 1));
+		}
+		nextHop[destination.ID] = neighbor;
+	}
+
+	/**
+	 * @return The neighbor of <code>owner</code> to which a message for
+	 * <code>destination</code> should be sent, or null if no route is known or
+	 * the known next hop is not a neighbor anymore.
+	 */
+	public Node nextHop(Node owner, Node destination) {
+		if (owner.outgoingConnections.contains(owner, destination)) {
+			return destination;
+		}
+		if (destination.ID >= nextHop.length) {
+			return null;
+		}
+		Node hop = nextHop[destination.ID];
+		if (hop != null && owner.outgoingConnections.contains(owner, hop)) {
+			return hop;
+		}
+		return null;
+	}
+}
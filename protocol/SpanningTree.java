@@ -0,0 +1,188 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import sinalgo.nodes.Node;
+import sinalgo.nodes.edges.Edge;
+
+/**
+ * One node's view of a broadcast spanning tree, built like a distance
+ * vector protocol: every node periodically tells its neighbors the root it
+ * knows, the root's latest sequence number, its distance to the root and
+ * its parent. The root is the lowest ID in the connected component; a
+ * node's parent is the neighbor closest to the root. Neighbors that are not
+ * connected anymore or were not heard from within the expiry time are
+ * ignored, so broken edges are repaired by the next beacons. The root counts
+ * up its sequence number with every beacon; a root whose number stops
+ * growing for the expiry time is considered gone, which avoids counting to
+ * infinity.
+ */
+public class SpanningTree {
+	public static final int MAX_DISTANCE = 64;
+
+	// last beacon of every neighbor, indexed by ID
+	private double[] heardAt = new double[0];
+	private int[] roots = new int[0];
+	private int[] seqs = new int[0];
+	private int[] distances = new int[0];
+	private int[] parents = new int[0];
+
+	private int root = Integer.MAX_VALUE;
+	private int seq = 0;
+	private int distance = 0;
+	private Node parent = null;
+	private final List<Node> neighbors = new ArrayList<Node>();
+
+	// this node's own sequence number while it is root
+	private int ownSeq = 0;
+	// when the sequence number of the current root last grew
+	private double seqGrewAt = 0;
+	// a root found to be gone, with its last sequence number
+	private int deadRoot = -1;
+	private int deadSeq = 0;
+
+	/**
+	 * Records a beacon of the neighbor <code>from</code>.
+	 */
+	public void heard(Node from, int root, int seq, int distance, int parentId, double now) {
+		int id = from.ID;
+		if (id >= heardAt.length) {
+			int n = Math.max(id + 1, 2 * heardAt.length);
+			int old = heardAt.length;
+			heardAt = Arrays.copyOf(heardAt, n);
+			Arrays.fill(heardAt, old, n, -1);
+			roots = Arrays.copyOf(roots, n);
+			seqs = Arrays.copyOf(seqs, n);
+			distances = Arrays.copyOf(distances, n);
+			parents = Arrays.copyOf(parents, n);
+		}
+		heardAt[id] = now;
+		roots[id] = root;
+		seqs[id] = seq;
+		distances[id] = distance;
+		parents[id] = parentId;
+		if (root == this.root && seq > this.seq) {
+			this.seq = seq;
+			seqGrewAt = now;
+		}
+	}
+
+	/**
+	 * Chooses root, parent and children of <code>self</code> from the
+	 * beacons of its current neighbors that are not older than
+	 * <code>expiry</code>.
+	 */
+	public void update(Node self, double now, double expiry) {
+		if (root != self.ID && now - seqGrewAt > expiry) {
+			deadRoot = root;
+			deadSeq = seq;
+		}
+		int bestRoot = self.ID;
+		int bestDistance = 0;
+		Node best = null;
+		for (Edge e : self.outgoingConnections) {
+			Node n = e.endNode;
+			if (!usable(n, self, now, expiry) || parents[n.ID] == self.ID) {
+				continue;
+			}
+			int r = roots[n.ID];
+			int d = distances[n.ID] + 1;
+			if (r < bestRoot || (r == bestRoot && best != null 
+					&& (d < bestDistance || (d == bestDistance && n.ID < best.ID)))) {
+				bestRoot = r;
+				bestDistance = d;
+				best = n;
+			}
+		}
+		if (best == null) {
+			seq = ++ownSeq;
+			seqGrewAt = now;
+		} else if (bestRoot != root) {
+			seq = seqs[best.ID];
+			seqGrewAt = now;
+		}
+		root = bestRoot;
+		distance = bestDistance;
+		parent = best;
+		neighbors.clear();
+		if (parent != null) {
+			neighbors.add(parent);
+		}
+		for (Edge e : self.outgoingConnections) {
+			Node n = e.endNode;
+			if (usable(n, self, now, expiry) && parents[n.ID] == self.ID && roots[n.ID] == root) {
+				neighbors.add(n);
+			}
+		}
+	}
+
+	private boolean usable(Node n, Node self, double now, double expiry) {
+		int id = n.ID;
+		return id < heardAt.length && heardAt[id] >= 0 && now - heardAt[id] <= expiry 
+				&& distances[id] < MAX_DISTANCE && !(roots[id] == deadRoot && seqs[id] <= deadSeq);
+	}
+
+	public int root() {
+		return root;
+	}
+
+	public int seq() {
+		return seq;
+	}
+
+	public int distance() {
+		return distance;
+	}
+
+	/**
+	 * @return The parent, or null at the root.
+	 */
+	public Node parent() {
+		return parent;
+	}
+
+	/**
+	 * @return Parent and children, as of the last update.
+	 */
+	public List<Node> neighbors() {
+		return neighbors;
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.paxos.protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only write-ahead log of the acceptor state in a local file.
+ * Records are buffered in memory and written and forced to disk together by
+ * {@link #sync()}, so all records of one round cost a single
+ * <code>force()</code> (group commit).
+ * <p>
+ * Record layout: type byte, proposal number; accept records add the slot,
+ * the number of commands and each command as length-prefixed UTF-8.
+ */
+public class WriteAheadLog implements AcceptorStorage {
+	static final byte PROMISE = 1;
+	static final byte ACCEPT = 2;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocate(4096);
+	private long syncs = 0;
+
+	/**
+	 * Opens the log in <code>file</code>.
+	 * @param keep If false, a previous log in the file is discarded.
+	 */
+	public WriteAheadLog(File file, boolean keep) throws IOException {
+		this.file = file;
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null) {
+			dir.mkdirs();
+		}
+		open();
+		if (!keep) {
+			channel.truncate(0);
+		}
+		channel.position(channel.size());
+	}
+
+	private void open() throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, 
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	public void promise(int number) {
+		reserve(5);
+		buffer.put(PROMISE).putInt(number);
+	}
+
+	public void accept(int slot, int number, Batch value) {
+		byte[][] commands = new byte[value.size()][];
+		int length = 13;
+		for (int i = 0; i < commands.length; i++) {
+			commands[i] = value.get(i).getBytes(UTF8);
+			length += 4 + commands[i].length;
+		}
+		reserve(length);
+		buffer.put(ACCEPT).putInt(number).putInt(slot).putInt(commands.length);
+		for (byte[] command : commands) {
+			buffer.putInt(command.length).put(command);
+		}
+	}
+
+	public void sync() throws IOException {
+		if (buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		channel.force(false);
+		syncs++;
+	}
+
+	/**
+	 * Replays the log. A torn record at the end of the file, left by a crash
+	 * during a write, is cut off.
+	 */
+	public int recover(ReplicatedLog log) throws IOException {
+		ByteBuffer in = ByteBuffer.allocate((int) channel.size());
+		channel.read(in, 0);
+		in.flip();
+		int promised = 0;
+		int valid = 0;
+		try {
+			while (in.hasRemaining()) {
+				byte type = in.get();
+				int number = in.getInt();
+				if (type == ACCEPT) {
+					int slot = in.getInt();
+					String[] commands = new String[in.getInt()];
+					for (int i = 0; i < commands.length; i++) {
+						byte[] command = new byte[in.getInt()];
+						in.get(command);
+						commands[i] = new String(command, UTF8);
+					}
+					if (slot >= log.first()) {
+						Slot s = log.get(slot);
+						s.acceptedNumber = number;
+						s.acceptedValue = new Batch(commands);
+					}
+				} else if (type != PROMISE) {
+					break;
+				}
+				promised = Math.max(promised, number);
+				valid = in.position();
+			}
+		} catch (RuntimeException e) {
+			// torn record at the end of the log (BufferUnderflow, bad length)
+		}
+		channel.truncate(valid);
+		channel.position(valid);
+		return promised;
+	}
+
+	/**
+	 * Rewrites the log without the records below <code>slot</code> into a new
+	 * file that atomically replaces the old one.
+	 */
+	public void compact(int slot) throws IOException {
+		sync();
+		ReplicatedLog current = new ReplicatedLog();
+		int promised = recover(current);
+		File tmp = new File(file.getPath() + ".tmp");
+		WriteAheadLog fresh = new WriteAheadLog(tmp, false);
+		fresh.promise(promised);
+		for (int i = Math.max(slot, current.first()); i < current.end(); i++) {
+			Slot s = current.get(i);
+			if (s.acceptedValue != null) {
+				fresh.accept(i, s.acceptedNumber, s.acceptedValue);
+			}
+		}
+		fresh.close();
+		channel.close();
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		open();
+		channel.position(channel.size());
+	}
+
+	public long syncCount() {
+		return syncs;
+	}
+
+	public void close() throws IOException {
+		sync();
+		channel.close();
+	}
+
+	private void reserve(int bytes) {
+		if (buffer.remaining() < bytes) {
+			ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes));
+			buffer.flip();
+			bigger.put(buffer);
+			buffer = bigger;
+		}
+	}
+}